@@ -0,0 +1,59 @@
+package com.offer.java.offer.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.repository.InMemoryScriptRepository;
+import com.offer.java.offer.service.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.graalvm.polyglot.Engine;
+
+import java.util.Optional;
+
+//Service graph wired by hand, the way Spring would, without starting the application
+public class BenchServices implements AutoCloseable {
+
+    public final ScriptProperties properties;
+    public final Engine engine;
+    public final SourceCache sourceCache;
+    public final ContextPool contextPool;
+    public final BoundedScriptScheduler scheduler;
+    public final ScriptIndex scriptIndex;
+    public final ScriptMetrics metrics;
+    public final ScriptWatchdog watchdog;
+    public final InMemoryScriptRepository scriptRepository;
+    public final ResultCache resultCache;
+    public final CallbackDispatcher callbackDispatcher;
+    public final ScriptValidator validator;
+    public final ScriptExecutionService scriptExecutionService;
+
+    public BenchServices(ScriptProperties properties) {
+        this.properties = properties;
+        this.metrics = new ScriptMetrics(new SimpleMeterRegistry());
+        this.engine = Engine.newBuilder("js").option("engine.WarnInterpreterOnly", "false").build();
+        this.sourceCache = new SourceCache(properties);
+        this.validator = new ScriptValidator(engine, sourceCache, properties);
+        this.contextPool = new ContextPool(engine, properties, metrics);
+        this.contextPool.warmUp();
+        this.scheduler = new BoundedScriptScheduler(properties);
+        this.scriptIndex = new ScriptIndex();
+        this.watchdog = new ScriptWatchdog(properties);
+        this.scriptRepository = new InMemoryScriptRepository();
+        this.resultCache = new ResultCache(properties, metrics);
+        this.callbackDispatcher = new CallbackDispatcher(properties, metrics, new ObjectMapper());
+        this.scriptExecutionService = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+    }
+
+    public BenchServices() {
+        this(new ScriptProperties());
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        watchdog.shutdown();
+        callbackDispatcher.shutdown();
+        validator.close();
+        contextPool.close();
+        engine.close(true);
+    }
+}
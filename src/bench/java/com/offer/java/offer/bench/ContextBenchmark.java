@@ -0,0 +1,70 @@
+package com.offer.java.offer.bench;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.service.PooledContext;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+//Cost of getting a context to run a tiny script: own engine, shared engine, pooled and reused
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextBenchmark {
+
+    //Wrapped in a function so reused contexts do not see a redeclared global
+    private static final String SCRIPT = "(() => { let total = 0; for (let i = 0; i < 100; i++) { total += i; } return total; })()";
+
+    private BenchServices services;
+    private Source source;
+
+    @Setup
+    public void setUp() {
+        ScriptProperties properties = new ScriptProperties();
+        properties.getContextPool().setMaxUses(Integer.MAX_VALUE);
+        services = new BenchServices(properties);
+        source = services.sourceCache.getSource(SCRIPT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        services.close();
+    }
+
+    @Benchmark
+    public Object ownEnginePerRun() {
+        try (Context context = Context.newBuilder("js")
+                .out(OutputStream.nullOutputStream())
+                .option("engine.WarnInterpreterOnly", "false")
+                .build()) {
+            return context.eval("js", SCRIPT).asInt();
+        }
+    }
+
+    @Benchmark
+    public Object sharedEngineNewContext() {
+        try (Context context = Context.newBuilder("js")
+                .engine(services.engine)
+                .out(OutputStream.nullOutputStream())
+                .build()) {
+            return context.eval(source).asInt();
+        }
+    }
+
+    @Benchmark
+    public Object pooledContextReused() throws Exception {
+        PooledContext pooledContext = services.contextPool.borrow();
+        try {
+            pooledContext.redirect(OutputStream.nullOutputStream(), OutputStream.nullOutputStream());
+            return pooledContext.getContext().eval(source).asInt();
+        } finally {
+            services.contextPool.release(pooledContext);
+        }
+    }
+}
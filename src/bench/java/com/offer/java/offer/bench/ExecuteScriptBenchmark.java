@@ -0,0 +1,68 @@
+package com.offer.java.offer.bench;
+
+import com.offer.java.offer.dto.BatchMode;
+import com.offer.java.offer.dto.BatchResult;
+import com.offer.java.offer.dto.Priority;
+import com.offer.java.offer.dto.ScriptResult;
+import com.offer.java.offer.service.ScriptOutput;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//End-to-end executeScript and executeBatch latency; the script is deleted after each call so storage stays flat
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecuteScriptBenchmark {
+
+    private static final String SCRIPT = "console.log('fdsfd')";
+    private static final int BATCH_SIZE = 10;
+    private static final List<String> BATCH = Collections.nCopies(BATCH_SIZE, SCRIPT);
+
+    private BenchServices services;
+
+    @Setup
+    public void setUp() {
+        services = new BenchServices();
+    }
+
+    @TearDown
+    public void tearDown() {
+        services.close();
+    }
+
+    @Benchmark
+    public ScriptResult blocking() {
+        ScriptResult result = services.scriptExecutionService.executeScript(SCRIPT, true);
+        services.scriptExecutionService.deleteScript(result.getId());
+        return result;
+    }
+
+    //Submit and wait until the worker finished
+    @Benchmark
+    public ScriptResult nonBlocking() throws InterruptedException {
+        ScriptResult result = services.scriptExecutionService.executeScript(SCRIPT, false);
+        ScriptOutput output = services.scriptExecutionService.getScriptOutput(result.getId());
+        while (!output.isCompleted()) {
+            output.awaitOutput(Long.MAX_VALUE, Long.MAX_VALUE, 1000);
+        }
+        services.scriptExecutionService.deleteScript(result.getId());
+        return result;
+    }
+
+    //Per script, comparable with blocking
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public BatchResult batchBlocking() {
+        BatchResult batch = services.scriptExecutionService.executeBatch(BATCH, true, Priority.NORMAL, null, BatchMode.ALL_OR_NOTHING);
+        for (ScriptResult result : batch.getResults()) {
+            services.scriptExecutionService.deleteScript(result.getId());
+        }
+        return batch;
+    }
+}
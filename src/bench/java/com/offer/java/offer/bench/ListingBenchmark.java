@@ -0,0 +1,56 @@
+package com.offer.java.offer.bench;
+
+import com.offer.java.offer.dto.*;
+import com.offer.java.offer.service.ScriptOutput;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//One page of GET /api/scripts against a store of 1k/10k/100k scripts
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListingBenchmark {
+
+    private static final Status[] STATUSES = {Status.COMPLETED, Status.ERROR, Status.STOPPED, Status.COMPLETED};
+
+    @Param({"1000", "10000", "100000"})
+    public int scripts;
+
+    private BenchServices services;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        services = new BenchServices();
+        Map<String, ScriptOutput> outputStorage = (Map<String, ScriptOutput>) ReflectionTestUtils.getField(services.scriptExecutionService, "outputStorage");
+        for (int i = 0; i < scripts; i++) {
+            ScriptInfo scriptInfo = new ScriptInfo("script-" + i, "console.log(" + i + ")");
+            scriptInfo.finish(STATUSES[i % STATUSES.length]);
+            scriptInfo.setDuration(i % 997);
+            services.scriptRepository.save(scriptInfo);
+            outputStorage.put(scriptInfo.getId(), new ScriptOutput());
+            services.scriptIndex.update(scriptInfo.getId(), scriptInfo.getStatus(), scriptInfo.getDuration());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        services.close();
+    }
+
+    @Benchmark
+    public ScriptPage firstPage() {
+        return services.scriptExecutionService.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL, null, 100);
+    }
+
+    @Benchmark
+    public ScriptPage byDurationFilteredByStatus() {
+        return services.scriptExecutionService.getAllScripts(SortedByTime.LOWER, SortedByStatus.ERROR, null, 100);
+    }
+}
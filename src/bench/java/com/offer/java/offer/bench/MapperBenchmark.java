@@ -0,0 +1,70 @@
+package com.offer.java.offer.bench;
+
+import com.offer.java.offer.dto.*;
+import com.offer.java.offer.mapper.MapperScript;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//Per-call cost of the hand-written MapperScript against the reflective ModelMapper it replaced
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+
+    private ScriptInfo scriptInfo;
+    private ScriptResult scriptResult;
+
+    @Setup
+    public void setUp() {
+        scriptResult = new ScriptResult("529fadc8-a2fe-44b4-8e3b-2d87ec18bbb7");
+        scriptResult.setOutput("fdsfd\n");
+        scriptResult.setError("");
+        scriptResult.setStatus(Status.COMPLETED);
+
+        scriptInfo = new ScriptInfo(scriptResult.getId(), "console.log('fdsfd')");
+        scriptInfo.setResult(MapperScript.mapToScriptResultDTO(scriptResult));
+        scriptInfo.finish(Status.COMPLETED);
+        scriptInfo.setDuration(653);
+
+        modelMapper.map(scriptInfo, ScriptInfoShort.class);
+        modelMapper.map(scriptInfo, ScriptInfoResponse.class);
+        modelMapper.map(scriptResult, ScriptResultDTO.class);
+    }
+
+    @Benchmark
+    public ScriptInfoShort shortInfo_modelMapper() {
+        return modelMapper.map(scriptInfo, ScriptInfoShort.class);
+    }
+
+    @Benchmark
+    public ScriptInfoShort shortInfo_mapperScript() {
+        return MapperScript.mapToShortInfo(scriptInfo);
+    }
+
+    @Benchmark
+    public ScriptInfoResponse responseScript_modelMapper() {
+        return modelMapper.map(scriptInfo, ScriptInfoResponse.class);
+    }
+
+    @Benchmark
+    public ScriptInfoResponse responseScript_mapperScript() {
+        return MapperScript.mapToResponseScript(scriptInfo);
+    }
+
+    @Benchmark
+    public ScriptResultDTO resultDto_modelMapper() {
+        return modelMapper.map(scriptResult, ScriptResultDTO.class);
+    }
+
+    @Benchmark
+    public ScriptResultDTO resultDto_mapperScript() {
+        return MapperScript.mapToScriptResultDTO(scriptResult);
+    }
+}
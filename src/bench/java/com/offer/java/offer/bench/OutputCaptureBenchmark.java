@@ -0,0 +1,59 @@
+package com.offer.java.offer.bench;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.service.PooledContext;
+import com.offer.java.offer.service.ScriptOutput;
+import org.graalvm.polyglot.Source;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//console.log loop written into a ScriptOutput, per overflow mode
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OutputCaptureBenchmark {
+
+    //10k lines, about 100 KB per run
+    private static final String SCRIPT = "for (let i = 0; i < 10000; i++) { console.log('output line number ' + i); }";
+
+    @Param({"TAIL", "SPILL"})
+    public ScriptProperties.OutputOverflow overflow;
+
+    private BenchServices services;
+    private ScriptProperties.Output settings;
+    private Source source;
+
+    @Setup
+    public void setUp() {
+        ScriptProperties properties = new ScriptProperties();
+        properties.getContextPool().setMaxUses(Integer.MAX_VALUE);
+        properties.getOutput().setOverflow(overflow);
+        properties.getOutput().setMemoryLimitBytes(64 * 1024);
+        services = new BenchServices(properties);
+        settings = properties.getOutput();
+        source = services.sourceCache.getSource(SCRIPT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        services.close();
+    }
+
+    @Benchmark
+    public long consoleLogLoop() throws Exception {
+        ScriptOutput output = new ScriptOutput(settings);
+        PooledContext pooledContext = services.contextPool.borrow();
+        try {
+            pooledContext.redirect(output.getOut(), output.getErr());
+            pooledContext.getContext().eval(source);
+            return output.getOut().size();
+        } finally {
+            services.contextPool.release(pooledContext);
+            output.close();
+        }
+    }
+}
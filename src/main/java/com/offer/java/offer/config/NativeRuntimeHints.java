@@ -0,0 +1,44 @@
+package com.offer.java.offer.config;
+
+import com.offer.java.offer.dto.QueuedScript;
+import com.offer.java.offer.dto.ScriptRecord;
+import com.offer.java.offer.dto.ScriptResult;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.List;
+
+//Native image metadata Spring AOT cannot infer on its own. Controller payloads are registered by AOT,
+//these DTOs are also read and written by our own ObjectMappers (file repository, work queue, callbacks).
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    //GraalJS 23.0 ships this as reflect-config.json/resource-config.json outside META-INF/native-image,
+    //so native-image does not pick it up by itself
+    private static final List<String> ICU_CONSTRUCTED = List.of(
+            "com.ibm.icu.impl.ICUCurrencyDisplayInfoProvider",
+            "com.ibm.icu.impl.ICUCurrencyMetaInfo",
+            "com.ibm.icu.impl.ICULangDataTables",
+            "com.ibm.icu.impl.ICURegionDataTables",
+            "com.ibm.icu.impl.TimeZoneNamesFactoryImpl",
+            "com.ibm.icu.text.NumberFormatServiceShim",
+            "com.ibm.icu.text.CollatorServiceShim",
+            "com.ibm.icu.text.BreakIteratorFactory");
+
+    private final BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindings.registerReflectionHints(hints.reflection(), ScriptRecord.class, QueuedScript.class, ScriptResult.class);
+
+        for (String type : ICU_CONSTRUCTED) {
+            hints.reflection().registerType(TypeReference.of(type), MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+        }
+        hints.reflection().registerType(TypeReference.of("com.ibm.icu.impl.LocaleDisplayNamesImpl"), MemberCategory.INVOKE_DECLARED_METHODS);
+        hints.resources().registerPattern("com/ibm/icu/impl/data/icudt72b/**");
+        hints.resources().registerPattern("com/oracle/truffle/js/runtime/resources/*.js");
+        hints.resources().registerResourceBundle("com.oracle.js.parser.resources.Messages");
+    }
+}
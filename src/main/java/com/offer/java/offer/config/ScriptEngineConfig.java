@@ -0,0 +1,19 @@
+package com.offer.java.offer.config;
+
+import org.graalvm.polyglot.Engine;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+@Configuration
+@ImportRuntimeHints(NativeRuntimeHints.class)
+public class ScriptEngineConfig {
+
+    //One engine for all contexts, so parsed code and JIT caches survive between runs
+    @Bean(destroyMethod = "close")
+    public Engine scriptEngine() {
+        return Engine.newBuilder("js")
+                .option("engine.WarnInterpreterOnly", "false")
+                .build();
+    }
+}
@@ -0,0 +1,221 @@
+package com.offer.java.offer.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "script")
+public class ScriptProperties {
+
+    private SourceCache sourceCache = new SourceCache();
+    private ContextPool contextPool = new ContextPool();
+    private Executor executor = new Executor();
+    private Stream stream = new Stream();
+    private Output output = new Output();
+    private Listing listing = new Listing();
+    private Limits limits = new Limits();
+    private Retention retention = new Retention();
+    private Repository repository = new Repository();
+    private ResultCache resultCache = new ResultCache();
+    private Batch batch = new Batch();
+    private Template template = new Template();
+    private Callback callback = new Callback();
+    private Cluster cluster = new Cluster();
+    private Validation validation = new Validation();
+
+    @Data
+    public static class SourceCache {
+        //max number of parsed sources kept for reuse
+        private int maxSize = 1000;
+    }
+
+    @Data
+    public static class ContextPool {
+        //max contexts in use or idle at the same time
+        private int size = 10;
+        //contexts kept pre-built and ready to borrow
+        private int minIdle = 2;
+        //runs per context before it is closed and replaced; above 1 scripts share global state
+        private int maxUses = 1;
+        //how long a blocking run waits for a free context
+        private long borrowTimeoutMs = 5000;
+        //pre-build min-idle contexts on startup
+        private boolean warmUp = true;
+    }
+
+    @Data
+    public static class Executor {
+        //threads running non-blocking scripts
+        private int poolSize = 10;
+        //scripts running at once when spring.threads.virtual.enabled=true
+        private int maxConcurrent = 100;
+        //scripts waiting for a thread; submissions above this are rejected with 429
+        private int queueCapacity = 100;
+    }
+
+    @Data
+    public static class Output {
+        //bytes of stdout (and separately stderr) kept in heap per script
+        private int memoryLimitBytes = 1024 * 1024;
+        //what happens past the memory limit
+        private OutputOverflow overflow = OutputOverflow.TAIL;
+        //SPILL only: bytes kept on disk per stream, later output is dropped
+        private long maxSpillBytes = 64L * 1024 * 1024;
+        //SPILL only: size of one memory-mapped file segment
+        private int spillSegmentBytes = 4 * 1024 * 1024;
+        //SPILL only: directory for spill files, system temp dir when empty
+        private String spillDirectory = "";
+        //max bytes returned by one /output read
+        private int maxReadBytes = 64 * 1024;
+        //last bytes of stdout and stderr kept with the stored result, responses and callbacks; 0 keeps no body
+        private int resultTailBytes = 64 * 1024;
+    }
+
+    public enum OutputOverflow {
+        //keep only the last memory-limit bytes
+        TAIL,
+        //move the output to a memory-mapped temp file
+        SPILL
+    }
+
+    @Data
+    public static class Listing {
+        //page size of GET /api/scripts when a cursor is given without a limit
+        private int defaultLimit = 100;
+        //largest page a client can ask for
+        private int maxLimit = 1000;
+    }
+
+    @Data
+    public static class Limits {
+        //defaults for runs that do not pass their own limits, 0 means unlimited
+        private long timeoutMs = 0;
+        private long cpuTimeMs = 0;
+        private long statementLimit = 0;
+        private long heapBytes = 0;
+        //how often running scripts are checked against time and heap limits
+        private long checkIntervalMs = 10;
+        //how long a stopped script gets to leave its context before the context is closed
+        private long stopGraceMs = 100;
+    }
+
+    @Data
+    public static class Retention {
+        //finished scripts kept, 0 = unlimited
+        private int maxEntries;
+        //how long a finished script is kept, 0 = forever
+        private long maxAgeMs;
+        //output bytes held by all stored scripts, result tails included, 0 = unlimited
+        private long maxOutputBytes;
+        //which finished scripts go first when a cap is exceeded
+        private RetentionOrder order = RetentionOrder.OLDEST;
+        private long sweepIntervalMs = 5000;
+    }
+
+    public enum RetentionOrder {
+        //earliest finished first
+        OLDEST,
+        //least recently read first
+        LRU
+    }
+
+    @Data
+    public static class Repository {
+        //MEMORY keeps scripts in heap only, FILE also writes them to an append-only log
+        private RepositoryType type = RepositoryType.MEMORY;
+        //FILE only: directory of log segments and snapshots
+        private String directory = "data/scripts";
+        //FILE only: a new log segment is started past this size
+        private long segmentBytes = 16L * 1024 * 1024;
+        //FILE only: log bytes written since the last snapshot that trigger compaction
+        private long compactAfterBytes = 64L * 1024 * 1024;
+        //FILE only: max records written with one fsync
+        private int batchSize = 1000;
+    }
+
+    public enum RepositoryType {
+        MEMORY, FILE
+    }
+
+    @Data
+    public static class ResultCache {
+        //results kept for cache=true submissions
+        private int maxSize = 1000;
+        //how long a result is served from the cache
+        private long ttlMs = 10 * 60 * 1000;
+        //how long a blocking submit waits for the shared run before answering with its current status
+        private long waitMs = 60 * 1000;
+    }
+
+    @Data
+    public static class Batch {
+        //most scripts accepted by one POST /api/scripts/execute/batch, never more than executor.queue-capacity
+        private int maxSize = 100;
+    }
+
+    @Data
+    public static class Template {
+        //most named templates registered at once
+        private int maxSize = 1000;
+    }
+
+    @Data
+    public static class Callback {
+        //threads posting results to callback URLs
+        private int poolSize = 4;
+        //deliveries queued or waiting for a retry; past this new callbacks are dropped
+        private int queueCapacity = 1000;
+        //attempts per callback, the first one included
+        private int maxAttempts = 5;
+        //delay before the first retry, doubled for each one after it
+        private long initialBackoffMs = 500;
+        private long maxBackoffMs = 30000;
+        //connect and response timeout of one attempt
+        private long timeoutMs = 5000;
+        //hosts callbacks may be posted to, trusted whatever they resolve to; empty = any public host
+        private List<String> allowedHosts = new ArrayList<>();
+        //let callbacks reach loopback, private, link-local and other internal addresses
+        private boolean allowPrivateAddresses;
+    }
+
+    @Data
+    public static class Cluster {
+        //LOCAL runs scripts on the node that received them, FILE shares the queue and results through a directory
+        private WorkQueueType queue = WorkQueueType.LOCAL;
+        //FILE only: directory shared by all nodes
+        private String directory = "data/cluster";
+        //name of this node in claims, random per start when empty; must not contain "--"
+        private String nodeId = "";
+        //how often a node with an idle executor thread looks for queued scripts
+        private long pollIntervalMs = 20;
+        //claims of a node not seen for this long go back to the queue
+        private long claimTimeoutMs = 30000;
+    }
+
+    public enum WorkQueueType {
+        LOCAL, FILE
+    }
+
+    @Data
+    public static class Validation {
+        //parse every submitted script first, malformed ones are rejected with 400 before they are queued
+        private boolean enabled = true;
+        //contexts that only parse, shared by all submitting threads
+        private int parsers = 2;
+    }
+
+    @Data
+    public static class Stream {
+        //open output streams at the same time, more are rejected with 429
+        private int maxStreams = 100;
+        //max bytes sent in one event
+        private int chunkSize = 8192;
+        //how often a stream without new output checks the script state
+        private long pollIntervalMs = 1000;
+        //0 keeps the stream open until the script finishes
+        private long timeoutMs = 0;
+    }
+}
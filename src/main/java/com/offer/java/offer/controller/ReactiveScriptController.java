@@ -0,0 +1,168 @@
+package com.offer.java.offer.controller;
+
+import com.offer.java.offer.dto.*;
+import com.offer.java.offer.service.ReactiveOutputStreamer;
+import com.offer.java.offer.service.ScriptExecutionService;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+//The script API on WebFlux (reactive profile). Blocking runs complete a Mono when the script ends,
+//so open connections do not hold a thread while their script waits or runs. Every other call runs off the event loop,
+//the file repository and the shared work queue do blocking IO.
+@RestController
+@RequestMapping("/api/scripts")
+@AllArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveScriptController {
+    private final ScriptExecutionService scriptExecutionService;
+
+    private final ReactiveOutputStreamer reactiveOutputStreamer;
+
+    private final static String MESSAGE_STOPPED_SCRIPT = "Script stopped";
+
+    private final static String MESSAGE_DELETE_SCRIPT = "Script deleted";
+
+    private final static String HEADER_NEXT_CURSOR = "X-Next-Cursor";
+
+    //Evaluate arbitrary JavaScript code; blocking=true answers when the script ends.
+    //Submits parse the script and may wait for a free parser, so they run off the event loop
+    @PostMapping("/execute")
+    public Mono<ScriptResult> executeScript(@RequestBody String script, @RequestParam boolean blocking,
+                                            @RequestParam(defaultValue = "NORMAL") Priority priority,
+                                            @RequestParam(required = false) Long timeoutMs,
+                                            @RequestParam(required = false) Long cpuTimeMs,
+                                            @RequestParam(required = false) Long statementLimit,
+                                            @RequestParam(required = false) Long heapBytes,
+                                            @RequestParam(defaultValue = "false") boolean cache,
+                                            @RequestParam(required = false) String callbackUrl) {
+        ScriptSubmission submission = ScriptSubmission.builder()
+                .script(script)
+                .blocking(blocking)
+                .priority(priority)
+                .limits(new ScriptLimits(timeoutMs, cpuTimeMs, statementLimit, heapBytes))
+                .cache(cache)
+                .callbackUrl(callbackUrl)
+                .build();
+        if (!blocking) {
+            return Mono.fromCallable(() -> scriptExecutionService.executeScript(submission)).subscribeOn(Schedulers.boundedElastic());
+        }
+        return Mono.defer(() -> Mono.fromFuture(scriptExecutionService.executeScriptAsync(submission))).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //Queue a JSON array of scripts in one call; blocking answers with every result
+    @PostMapping("/execute/batch")
+    public Mono<BatchResult> executeBatch(@RequestBody List<String> scripts, @RequestParam boolean blocking,
+                                          @RequestParam(defaultValue = "NORMAL") Priority priority,
+                                          @RequestParam(defaultValue = "ALL_OR_NOTHING") BatchMode mode,
+                                          @RequestParam(required = false) Long timeoutMs,
+                                          @RequestParam(required = false) Long cpuTimeMs,
+                                          @RequestParam(required = false) Long statementLimit,
+                                          @RequestParam(required = false) Long heapBytes) {
+        ScriptLimits limits = new ScriptLimits(timeoutMs, cpuTimeMs, statementLimit, heapBytes);
+        //off the event loop, like /execute
+        Mono<BatchResult> submitted = Mono.fromCallable(() -> scriptExecutionService.executeBatch(scripts, false, priority, limits, mode))
+                .subscribeOn(Schedulers.boundedElastic());
+        if (!blocking) {
+            return submitted;
+        }
+        return submitted.flatMap(batch -> Flux.range(0, batch.getResults().size())
+                .concatMap(i -> batch.getResults().get(i).getStatus() == Status.QUEUE
+                        ? Mono.fromFuture(scriptExecutionService.getCompletion(batch.getResults().get(i).getId()))
+                        : Mono.just(batch.getResults().get(i)))
+                .collectList()
+                .map(results -> new BatchResult(batch.getBatchId(), batch.getAccepted(), batch.getRejected(), results)));
+    }
+
+    //Check that a script parses without storing or running it; off the event loop, it may wait for a free parser
+    @PostMapping("/validate")
+    public Mono<ScriptValidation> validateScript(@RequestBody String script) {
+        return Mono.fromCallable(() -> scriptExecutionService.validateScript(script)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //Review the list of scripts
+    @GetMapping
+    public Mono<ResponseEntity<List<ScriptInfoShort>>> listScripts(
+            @RequestParam(required = false) Optional<SortedByTime> sortedTime,
+            @RequestParam(required = false) Optional<SortedByStatus> sortedStatus,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor
+    ) {
+        return Mono.fromCallable(() -> {
+            ScriptPage page = scriptExecutionService.getAllScripts(sortedTime.orElse(SortedByTime.DEFAULT),
+                    sortedStatus.orElse(SortedByStatus.ALL), cursor, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(HEADER_NEXT_CURSOR, page.getNextCursor());
+            }
+            return response.body(page.getItems());
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //Context pool usage, for sizing the pool
+    @GetMapping("/context-pool")
+    public Mono<ContextPoolStats> getContextPoolStats() {
+        return Mono.fromCallable(scriptExecutionService::getContextPoolStats).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //Percentiles of each execution phase over all finished runs
+    @GetMapping("/phase-stats")
+    public Mono<Map<ExecutionPhase, PhaseStats>> getPhaseStats() {
+        return Mono.fromCallable(scriptExecutionService::getPhaseStats).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //Get detailed script info
+    @GetMapping("/{id}")
+    public Mono<ScriptInfoResponse> getScriptInfo(@PathVariable String id) {
+        return Mono.fromCallable(() -> scriptExecutionService.getInfoScriptById(id)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //Read output incrementally from a byte offset
+    @GetMapping("/{id}/output")
+    public Mono<ScriptOutputResponse> getScriptOutput(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "65536") int limit,
+            @RequestParam(defaultValue = "STDOUT") OutputChannel channel
+    ) {
+        return Mono.fromCallable(() -> scriptExecutionService.readOutput(id, channel, offset, limit)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //Raw output bytes from the offset, the response ends when the script completes
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_PLAIN_VALUE)
+    public Flux<DataBuffer> streamScriptOutput(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "STDOUT") OutputChannel channel
+    ) {
+        return Flux.defer(() -> reactiveOutputStreamer.stream(id, channel, offset)).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //Forcibly stop any running or scheduled script; off the event loop, a stop waits for the script to leave its context
+    @DeleteMapping("/{id}/stop")
+    public Mono<ScriptResponse> stopScript(@PathVariable String id) {
+        return Mono.fromCallable(() -> {
+            scriptExecutionService.stopScript(id);
+            return ScriptResponse.builder().message(MESSAGE_STOPPED_SCRIPT).statusOperation(StatusOperation.OK).id(id).build();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    //Remove inactive scripts
+    @DeleteMapping("/{id}")
+    public Mono<ScriptResponse> removeScript(@PathVariable String id) {
+        return Mono.fromCallable(() -> {
+            scriptExecutionService.deleteScript(id);
+            return ScriptResponse.builder().message(MESSAGE_DELETE_SCRIPT).statusOperation(StatusOperation.OK).id(id).build();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+}
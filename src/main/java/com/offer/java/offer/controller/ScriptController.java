@@ -2,39 +2,101 @@ package com.offer.java.offer.controller;
 
 import com.offer.java.offer.dto.*;
 import com.offer.java.offer.service.ScriptExecutionService;
+import com.offer.java.offer.service.ScriptOutputStreamer;
 import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/scripts")
 @AllArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class ScriptController {
     private final ScriptExecutionService scriptExecutionService;
 
+    private final ScriptOutputStreamer scriptOutputStreamer;
+
     private final static String MESSAGE_STOPPED_SCRIPT = "Script stopped";
 
     private final static String MESSAGE_DELETE_SCRIPT = "Script deleted";
 
-    //Evaluate arbitrary JavaScript code
+    private final static String HEADER_NEXT_CURSOR = "X-Next-Cursor";
+
+    //Evaluate arbitrary JavaScript code, optionally within resource limits, from the result cache or with a result callback
     @PostMapping("/execute")
-    public ScriptResult executeScript(@RequestBody String script, @RequestParam boolean blocking) {
-        return scriptExecutionService.executeScript(script, blocking);
+    public ScriptResult executeScript(@RequestBody String script, @RequestParam boolean blocking,
+                                      @RequestParam(defaultValue = "NORMAL") Priority priority,
+                                      @RequestParam(required = false) Long timeoutMs,
+                                      @RequestParam(required = false) Long cpuTimeMs,
+                                      @RequestParam(required = false) Long statementLimit,
+                                      @RequestParam(required = false) Long heapBytes,
+                                      @RequestParam(defaultValue = "false") boolean cache,
+                                      @RequestParam(required = false) String callbackUrl) {
+        ScriptSubmission submission = ScriptSubmission.builder()
+                .script(script)
+                .blocking(blocking)
+                .priority(priority)
+                .limits(new ScriptLimits(timeoutMs, cpuTimeMs, statementLimit, heapBytes))
+                .cache(cache)
+                .callbackUrl(callbackUrl)
+                .build();
+        return scriptExecutionService.executeScript(submission);
+    }
+
+    //Queue a JSON array of scripts in one call; blocking answers with every result
+    @PostMapping("/execute/batch")
+    public BatchResult executeBatch(@RequestBody List<String> scripts, @RequestParam boolean blocking,
+                                    @RequestParam(defaultValue = "NORMAL") Priority priority,
+                                    @RequestParam(defaultValue = "ALL_OR_NOTHING") BatchMode mode,
+                                    @RequestParam(required = false) Long timeoutMs,
+                                    @RequestParam(required = false) Long cpuTimeMs,
+                                    @RequestParam(required = false) Long statementLimit,
+                                    @RequestParam(required = false) Long heapBytes) {
+        ScriptLimits limits = new ScriptLimits(timeoutMs, cpuTimeMs, statementLimit, heapBytes);
+        return scriptExecutionService.executeBatch(scripts, blocking, priority, limits, mode);
+    }
+
+    //Check that a script parses without storing or running it
+    @PostMapping("/validate")
+    public ScriptValidation validateScript(@RequestBody String script) {
+        return scriptExecutionService.validateScript(script);
     }
 
     //Review the list of scripts
     @GetMapping
-    public List<ScriptInfoShort> listScripts(
+    public ResponseEntity<List<ScriptInfoShort>> listScripts(
             @RequestParam(required = false) Optional<SortedByTime> sortedTime,
-            @RequestParam(required = false) Optional<SortedByStatus> sortedStatus
+            @RequestParam(required = false) Optional<SortedByStatus> sortedStatus,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor
     ) {
         SortedByTime sortTime = sortedTime.orElse(SortedByTime.DEFAULT);
         SortedByStatus sortStatus = sortedStatus.orElse(SortedByStatus.ALL);
 
-        return scriptExecutionService.getAllScripts(sortTime, sortStatus);
+        ScriptPage page = scriptExecutionService.getAllScripts(sortTime, sortStatus, cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(HEADER_NEXT_CURSOR, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    //Context pool usage, for sizing the pool
+    @GetMapping("/context-pool")
+    public ContextPoolStats getContextPoolStats() {
+        return scriptExecutionService.getContextPoolStats();
+    }
+
+    //Percentiles of each execution phase over all finished runs
+    @GetMapping("/phase-stats")
+    public Map<ExecutionPhase, PhaseStats> getPhaseStats() {
+        return scriptExecutionService.getPhaseStats();
     }
 
     //Get detailed script info
@@ -43,6 +105,33 @@ public class ScriptController {
         return scriptExecutionService.getInfoScriptById(id);
     }
 
+    //Read output incrementally from a byte offset
+    @GetMapping("/{id}/output")
+    public ScriptOutputResponse getScriptOutput(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "65536") int limit,
+            @RequestParam(defaultValue = "STDOUT") OutputChannel channel
+    ) {
+        return scriptExecutionService.readOutput(id, channel, offset, limit);
+    }
+
+    //Stream stdout/stderr as server-sent events, ending with a status event
+    @GetMapping("/{id}/stream")
+    public SseEmitter streamScriptOutput(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "0") long errorOffset,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        if (lastEventId != null) {
+            long[] offsets = ScriptOutputStreamer.parseEventId(lastEventId);
+            offset = offsets[0];
+            errorOffset = offsets[1];
+        }
+        return scriptOutputStreamer.stream(id, offset, errorOffset);
+    }
+
     //Forcibly stop any running or scheduled script
     @DeleteMapping("/{id}/stop")
     public ResponseEntity<ScriptResponse> stopScript(@PathVariable String id) {
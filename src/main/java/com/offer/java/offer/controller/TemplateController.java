@@ -0,0 +1,60 @@
+package com.offer.java.offer.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.offer.java.offer.dto.*;
+import com.offer.java.offer.service.ScriptExecutionService;
+import com.offer.java.offer.service.TemplateRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/templates")
+@AllArgsConstructor
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class TemplateController {
+    private final TemplateRegistry templateRegistry;
+
+    private final ScriptExecutionService scriptExecutionService;
+
+    private final static String MESSAGE_DELETE_TEMPLATE = "Template deleted";
+
+    //Register a named script, or replace the one with this name
+    @PutMapping("/{name}")
+    public ScriptTemplate registerTemplate(@PathVariable String name, @RequestBody String script) {
+        return templateRegistry.register(name, script);
+    }
+
+    @GetMapping
+    public List<ScriptTemplate> listTemplates() {
+        return templateRegistry.getAll();
+    }
+
+    @GetMapping("/{name}")
+    public ScriptTemplate getTemplate(@PathVariable String name) {
+        return templateRegistry.get(name).toDto();
+    }
+
+    @DeleteMapping("/{name}")
+    public ResponseEntity<ScriptResponse> removeTemplate(@PathVariable String name) {
+        templateRegistry.remove(name);
+        return ResponseEntity.ok(ScriptResponse.builder().message(MESSAGE_DELETE_TEMPLATE).statusOperation(StatusOperation.OK).id(name).build());
+    }
+
+    //Run the template with a JSON body available to the script as args
+    @PostMapping("/{name}/execute")
+    public ScriptResult executeTemplate(@PathVariable String name, @RequestBody(required = false) JsonNode arguments,
+                                        @RequestParam boolean blocking,
+                                        @RequestParam(defaultValue = "NORMAL") Priority priority,
+                                        @RequestParam(required = false) Long timeoutMs,
+                                        @RequestParam(required = false) Long cpuTimeMs,
+                                        @RequestParam(required = false) Long statementLimit,
+                                        @RequestParam(required = false) Long heapBytes) {
+        ScriptLimits limits = new ScriptLimits(timeoutMs, cpuTimeMs, statementLimit, heapBytes);
+        return scriptExecutionService.executeTemplate(templateRegistry.get(name), arguments == null ? null : arguments.toString(),
+                blocking, priority, limits);
+    }
+}
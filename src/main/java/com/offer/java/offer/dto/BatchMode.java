@@ -0,0 +1,9 @@
+package com.offer.java.offer.dto;
+
+//How a batch behaves when the queue cannot take all of its scripts
+public enum BatchMode {
+    //the whole batch is queued or rejected
+    ALL_OR_NOTHING,
+    //scripts that fit are queued, the rest are returned as rejected
+    BEST_EFFORT
+}
@@ -0,0 +1,19 @@
+package com.offer.java.offer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResult {
+    //script ids are batchId-index
+    private String batchId;
+    private int accepted;
+    private int rejected;
+    //in the order of the submitted scripts
+    private List<ScriptResult> results;
+}
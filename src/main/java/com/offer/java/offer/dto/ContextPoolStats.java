@@ -0,0 +1,16 @@
+package com.offer.java.offer.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ContextPoolStats {
+    private int size;
+    private int idle;
+    private int inUse;
+    private long hits;
+    private long waits;
+    private long creations;
+    private long recycled;
+}
@@ -0,0 +1,6 @@
+package com.offer.java.offer.dto;
+
+//Phases of a run, in order; tag values of the script.phase timer
+public enum ExecutionPhase {
+    QUEUE_WAIT, CONTEXT_BUILD, EVAL, MAPPING
+}
@@ -0,0 +1,22 @@
+package com.offer.java.offer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Where the time of one run went, in microseconds measured with System.nanoTime.
+//contextBuildUs is the borrow for pooled runs, so a saturated pool shows up there rather than in evalUs
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExecutionTrace {
+    //submit until a thread started the run
+    private long queueWaitUs;
+    //borrowing a pooled context or building a new one
+    private long contextBuildUs;
+    private boolean pooledContext;
+    //the script itself, argument binding included
+    private long evalUs;
+    //releasing the context, copying output and mapping the result until it is stored
+    private long mappingUs;
+}
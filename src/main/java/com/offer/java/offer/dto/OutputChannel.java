@@ -0,0 +1,5 @@
+package com.offer.java.offer.dto;
+
+public enum OutputChannel {
+    STDOUT, STDERR
+}
@@ -0,0 +1,16 @@
+package com.offer.java.offer.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+//Latency of one execution phase over recent runs, see ExecutionTrace
+@Data
+@Builder
+public class PhaseStats {
+    private long count;
+    private double meanMs;
+    private double p50Ms;
+    private double p95Ms;
+    private double p99Ms;
+    private double maxMs;
+}
@@ -0,0 +1,24 @@
+package com.offer.java.offer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//A submitted script as it waits in the shared work queue, everything a node needs to run it
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueuedScript {
+    private String id;
+    private String script;
+    private Priority priority;
+    //already resolved against script.limits.* by the submitting node
+    private ScriptLimits limits;
+    private String template;
+    private String arguments;
+    private String callbackUrl;
+    //epoch millis of the submit, kept as the script's startTime
+    private long submittedAt;
+}
@@ -0,0 +1,15 @@
+package com.offer.java.offer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//What a run actually used; cpuTimeMs and allocatedBytes are null where the JVM cannot measure them (virtual threads)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResourceUsage {
+    private long wallTimeMs;
+    private Long cpuTimeMs;
+    private Long allocatedBytes;
+}
@@ -1,24 +1,125 @@
 package com.offer.java.offer.dto;
 
-import lombok.Data;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
-@Data
+//No @Data: equality is identity, and toString must not walk the atomics and futures
+@Getter
 public class ScriptInfo {
-    private String id;
-    private String script;
-    private ScriptResultDTO result;
+    private final String id;
+    private final String script;
+    //output and error of the run; its status mirrors the lifecycle below
+    private volatile ScriptResultDTO result;
+    //QUEUE -> PROCESSING -> final, or QUEUE -> final; only changed by compare-and-set, so readers never lock
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.QUEUE);
+    //set once a final script is deleted or evicted, a late store of its result must not bring it back
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean removed = new AtomicBoolean();
+    @Getter(AccessLevel.NONE)
+    private final List<StatusListener> listeners = new CopyOnWriteArrayList<>();
+    @Setter
     private long startTime;
+    @Setter
     private long duration;
+    @Setter
     private Future<?> future;
-
-
+    //completed with the final result of this run, never with an exception
+    private final CompletableFuture<ScriptResult> completion = new CompletableFuture<>();
+    @Setter
+    private ScriptLimits limits;
+    @Setter
+    private ResourceUsage usage;
+    //set when the run was cancelled for going over a limit
+    @Setter
+    private ResourceLimit exceededLimit;
+    //per-phase time of the run, null until it finished
+    @Setter
+    private ExecutionTrace trace;
+    //set for template runs: template name and the JSON bound to args
+    @Setter
+    private String template;
+    @Setter
+    private String arguments;
+    //final result is posted here when set
+    @Setter
+    private String callbackUrl;
+    //last time a client read the script, for LRU retention
+    @Setter
+    private volatile long lastAccessTime;
 
     public ScriptInfo(String id, String script) {
         this.id = id;
         this.script = script;
         this.result = new ScriptResultDTO();
         this.startTime = System.currentTimeMillis();
+        this.lastAccessTime = startTime;
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
+    public boolean isFinished() {
+        return isFinal(status.get());
+    }
+
+    //The new result takes the current status, whatever the one it was built with
+    public void setResult(ScriptResultDTO result) {
+        result.setStatus(status.get());
+        this.result = result;
+    }
+
+    public void addListener(StatusListener listener) {
+        listeners.add(listener);
+    }
+
+    //False when the script is no longer in from, someone else moved it first
+    public boolean transition(Status from, Status to) {
+        if (isFinal(from) || from == to || (from == Status.PROCESSING && to == Status.QUEUE)) {
+            throw new IllegalArgumentException("No transition from " + from + " to " + to);
+        }
+        if (!status.compareAndSet(from, to)) {
+            return false;
+        }
+        result.setStatus(to);
+        for (StatusListener listener : listeners) {
+            listener.onTransition(this, from, to);
+        }
+        return true;
+    }
+
+    //Ends the script from whichever live status it is in; false when it had already ended
+    public boolean finish(Status to) {
+        if (!isFinal(to)) {
+            throw new IllegalArgumentException(to + " is not a final status");
+        }
+        Status current;
+        while (!isFinal(current = status.get())) {
+            if (transition(current, to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Only a final script can be removed, and only once
+    public boolean markRemoved() {
+        return isFinished() && removed.compareAndSet(false, true);
+    }
+
+    public boolean isRemoved() {
+        return removed.get();
+    }
+
+    public static boolean isFinal(Status status) {
+        return status != Status.PROCESSING && status != Status.QUEUE;
     }
 }
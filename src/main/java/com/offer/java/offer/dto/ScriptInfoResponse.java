@@ -9,4 +9,14 @@ public class ScriptInfoResponse {
     private ScriptResultDTO result;
     private long startTime;
     private long duration;
+    private Integer queuePosition;
+    //stdout size when the response was built, continue with /output?offset=outputOffset
+    private long outputOffset;
+    private ScriptLimits limits;
+    private ResourceUsage usage;
+    private ResourceLimit exceededLimit;
+    private ExecutionTrace trace;
+    private String template;
+    private String arguments;
+    private String callbackUrl;
 }
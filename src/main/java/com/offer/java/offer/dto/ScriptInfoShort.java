@@ -8,4 +8,5 @@ public class ScriptInfoShort {
     private String script;
     private ScriptResultDTO result;
     private long duration;
+    private long outputSize;
 }
@@ -0,0 +1,22 @@
+package com.offer.java.offer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//Per-run resource budget, null falls back to script.limits.*, 0 disables the limit
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScriptLimits {
+    //wall-clock time from the start of execution
+    private Long timeoutMs;
+    //CPU time of the executing thread
+    private Long cpuTimeMs;
+    //JavaScript statements, enforced by GraalVM ResourceLimits
+    private Long statementLimit;
+    //bytes allocated by the executing thread
+    private Long heapBytes;
+}
@@ -0,0 +1,21 @@
+package com.offer.java.offer.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ScriptOutputResponse {
+    private String id;
+    private OutputChannel channel;
+    //offset of the first returned byte
+    private long offset;
+    //offset to pass on the next read
+    private long nextOffset;
+    //bytes written so far
+    private long size;
+    private boolean truncated;
+    //no more output will be written
+    private boolean completed;
+    private String data;
+}
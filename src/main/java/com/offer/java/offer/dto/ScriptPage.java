@@ -0,0 +1,14 @@
+package com.offer.java.offer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ScriptPage {
+    private List<ScriptInfoShort> items;
+    //pass as cursor to get the next page, null on the last page
+    private String nextCursor;
+}
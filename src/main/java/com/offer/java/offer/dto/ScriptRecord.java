@@ -0,0 +1,20 @@
+package com.offer.java.offer.dto;
+
+import lombok.Data;
+
+//Persisted form of ScriptInfo
+@Data
+public class ScriptRecord {
+    private String id;
+    private String script;
+    private ScriptResultDTO result;
+    private long startTime;
+    private long duration;
+    private ScriptLimits limits;
+    private ResourceUsage usage;
+    private ResourceLimit exceededLimit;
+    private ExecutionTrace trace;
+    private String template;
+    private String arguments;
+    private String callbackUrl;
+}
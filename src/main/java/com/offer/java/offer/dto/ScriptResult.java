@@ -9,6 +9,13 @@ public class ScriptResult {
     private String output;
     private String error;
     private Status status;
+    private boolean outputTruncated;
+    private boolean errorTruncated;
+    private Integer queuePosition;
+    //answered from the result cache, id is the run that produced it
+    private boolean cached;
+    //batch submits only: why the script was not queued
+    private ScriptValidation validation;
 
 
     public ScriptResult() {
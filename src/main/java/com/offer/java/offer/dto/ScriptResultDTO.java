@@ -7,6 +7,8 @@ public class ScriptResultDTO {
     private String output;
     private String error;
     private Status status;
+    private boolean outputTruncated;
+    private boolean errorTruncated;
 
     public ScriptResultDTO() {
         this.status = Status.QUEUE;
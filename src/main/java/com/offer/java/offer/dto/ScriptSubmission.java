@@ -0,0 +1,25 @@
+package com.offer.java.offer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//One submitted script and how to run it
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScriptSubmission {
+    private String script;
+    //answer once the script reaches a final status
+    private boolean blocking;
+    @Builder.Default
+    private Priority priority = Priority.NORMAL;
+    //null falls back to script.limits.*
+    private ScriptLimits limits;
+    //answer from the result cache or share an identical run still going
+    private boolean cache;
+    //where the final result is posted
+    private String callbackUrl;
+}
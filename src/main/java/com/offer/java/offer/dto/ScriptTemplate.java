@@ -0,0 +1,14 @@
+package com.offer.java.offer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScriptTemplate {
+    private String name;
+    private String script;
+    private long createdAt;
+}
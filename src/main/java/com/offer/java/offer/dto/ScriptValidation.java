@@ -0,0 +1,20 @@
+package com.offer.java.offer.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScriptValidation {
+    private boolean valid;
+    private String message;
+    //1-based position of the syntax error
+    private Integer line;
+    private Integer column;
+    //batch submits only: index of the rejected script
+    private Integer index;
+}
@@ -1,5 +1,5 @@
 package com.offer.java.offer.dto;
 
 public enum SortedByStatus {
-    ALL, ERROR, COMPLETED, PROCESSING, STOPPED, QUEUE
+    ALL, ERROR, COMPLETED, PROCESSING, STOPPED, QUEUE, LIMIT_EXCEEDED
 }
@@ -1,5 +1,5 @@
 package com.offer.java.offer.dto;
 
 public enum Status {
-    ERROR, COMPLETED, PROCESSING, STOPPED, QUEUE
+    ERROR, COMPLETED, PROCESSING, STOPPED, QUEUE, LIMIT_EXCEEDED
 }
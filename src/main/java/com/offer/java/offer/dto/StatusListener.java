@@ -0,0 +1,7 @@
+package com.offer.java.offer.dto;
+
+//Called on the thread that made the transition, after it happened
+@FunctionalInterface
+public interface StatusListener {
+    void onTransition(ScriptInfo scriptInfo, Status from, Status to);
+}
@@ -15,5 +15,10 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(ex.getScriptResponse(), ex.getHttpStatus());
     }
 
+    @ExceptionHandler(ScriptSyntaxException.class)
+    public ResponseEntity<?> handleSyntaxException(ScriptSyntaxException ex) {
+        return new ResponseEntity<>(ex.getValidation(), ex.getHttpStatus());
+    }
+
 }
 
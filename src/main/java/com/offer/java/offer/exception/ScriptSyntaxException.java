@@ -0,0 +1,22 @@
+package com.offer.java.offer.exception;
+
+import com.offer.java.offer.dto.ScriptResponse;
+import com.offer.java.offer.dto.ScriptValidation;
+import com.offer.java.offer.dto.StatusOperation;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+//A submitted script that does not parse; answered with the ScriptValidation so the caller gets line and column
+@Getter
+public class ScriptSyntaxException extends ApplicationException {
+
+    private final ScriptValidation validation;
+
+    public ScriptSyntaxException(ScriptValidation validation) {
+        super(HttpStatus.BAD_REQUEST, ScriptResponse.builder()
+                .message(validation.getMessage())
+                .statusOperation(StatusOperation.ERROR)
+                .build());
+        this.validation = validation;
+    }
+}
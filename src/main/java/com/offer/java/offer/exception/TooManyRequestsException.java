@@ -0,0 +1,11 @@
+package com.offer.java.offer.exception;
+
+import com.offer.java.offer.dto.ScriptResponse;
+import org.springframework.http.HttpStatus;
+
+public class TooManyRequestsException extends ApplicationException {
+
+    public TooManyRequestsException(ScriptResponse scriptResponse) {
+        super(HttpStatus.TOO_MANY_REQUESTS, scriptResponse);
+    }
+}
@@ -1,23 +1,112 @@
 package com.offer.java.offer.mapper;
 
 import com.offer.java.offer.dto.*;
-import org.modelmapper.ModelMapper;
 
 
 public class MapperScript {
 
-    private static final ModelMapper mapper = new ModelMapper();
-
+    //The list never carries output, only its size
     public static ScriptInfoShort mapToShortInfo(ScriptInfo script) {
-        return mapper.map(script, ScriptInfoShort.class);
+        ScriptInfoShort info = new ScriptInfoShort();
+        info.setId(script.getId());
+        info.setScript(script.getScript());
+        info.setResult(copyResult(script.getResult(), script.getStatus(), false));
+        info.setDuration(script.getDuration());
+        return info;
     }
 
     public static ScriptInfoResponse mapToResponseScript(ScriptInfo script) {
-        return mapper.map(script, ScriptInfoResponse.class);
+        ScriptInfoResponse response = new ScriptInfoResponse();
+        response.setId(script.getId());
+        response.setScript(script.getScript());
+        response.setResult(copyResult(script.getResult(), script.getStatus(), true));
+        response.setStartTime(script.getStartTime());
+        response.setDuration(script.getDuration());
+        response.setLimits(script.getLimits());
+        response.setUsage(script.getUsage());
+        response.setExceededLimit(script.getExceededLimit());
+        response.setTrace(script.getTrace());
+        response.setTemplate(script.getTemplate());
+        response.setArguments(script.getArguments());
+        response.setCallbackUrl(script.getCallbackUrl());
+        return response;
     }
 
     public static ScriptResultDTO mapToScriptResultDTO(ScriptResult script) {
-        return mapper.map(script, ScriptResultDTO.class);
+        ScriptResultDTO result = new ScriptResultDTO();
+        result.setOutput(script.getOutput());
+        result.setError(script.getError());
+        result.setStatus(script.getStatus());
+        result.setOutputTruncated(script.isOutputTruncated());
+        result.setErrorTruncated(script.isErrorTruncated());
+        return result;
+    }
+
+    public static ScriptResult copyScriptResult(ScriptResult source) {
+        ScriptResult result = new ScriptResult(source.getId());
+        result.setOutput(source.getOutput());
+        result.setError(source.getError());
+        result.setStatus(source.getStatus());
+        result.setOutputTruncated(source.isOutputTruncated());
+        result.setErrorTruncated(source.isErrorTruncated());
+        result.setQueuePosition(source.getQueuePosition());
+        result.setCached(source.isCached());
+        return result;
+    }
+
+    public static ScriptRecord mapToScriptRecord(ScriptInfo script) {
+        ScriptRecord record = new ScriptRecord();
+        record.setId(script.getId());
+        record.setScript(script.getScript());
+        record.setResult(copyResult(script.getResult(), script.getStatus(), true));
+        record.setStartTime(script.getStartTime());
+        record.setDuration(script.getDuration());
+        record.setLimits(script.getLimits());
+        record.setUsage(script.getUsage());
+        record.setExceededLimit(script.getExceededLimit());
+        record.setTrace(script.getTrace());
+        record.setTemplate(script.getTemplate());
+        record.setArguments(script.getArguments());
+        record.setCallbackUrl(script.getCallbackUrl());
+        return record;
+    }
+
+    public static ScriptInfo mapToScriptInfo(ScriptRecord record) {
+        ScriptInfo script = new ScriptInfo(record.getId(), record.getScript());
+        if (record.getResult() != null) {
+            Status status = record.getResult().getStatus();
+            script.setResult(record.getResult());
+            if (status != null && status != Status.QUEUE) {
+                script.transition(Status.QUEUE, status);
+            }
+        }
+        script.setStartTime(record.getStartTime());
+        script.setLastAccessTime(record.getStartTime());
+        script.setDuration(record.getDuration());
+        script.setLimits(record.getLimits());
+        script.setUsage(record.getUsage());
+        script.setExceededLimit(record.getExceededLimit());
+        script.setTrace(record.getTrace());
+        script.setTemplate(record.getTemplate());
+        script.setArguments(record.getArguments());
+        script.setCallbackUrl(record.getCallbackUrl());
+        return script;
+    }
+
+    //The status is read from the script's lifecycle, not from the result it may be replacing
+    private static ScriptResultDTO copyResult(ScriptResultDTO source, Status status, boolean withOutput) {
+        if (source == null) {
+            return null;
+        }
+        ScriptResultDTO result = new ScriptResultDTO();
+        if (withOutput) {
+            result.setOutput(source.getOutput());
+        }
+        result.setError(source.getError());
+        result.setStatus(status);
+        result.setOutputTruncated(source.isOutputTruncated());
+        result.setErrorTruncated(source.isErrorTruncated());
+        return result;
     }
 
 }
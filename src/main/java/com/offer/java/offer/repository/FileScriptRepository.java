@@ -0,0 +1,370 @@
+package com.offer.java.offer.repository;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptInfo;
+import com.offer.java.offer.dto.ScriptRecord;
+import com.offer.java.offer.mapper.MapperScript;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//Heap map for reads, write-behind to an append-only log of segments plus a compacted snapshot.
+//Saves only enqueue; one writer thread coalesces them per id, appends a batch and fsyncs once per batch.
+//Record: int payload length, int crc32, byte type, payload (PUT: ScriptRecord JSON, DELETE: id).
+@Repository
+@ConditionalOnProperty(name = "script.repository.type", havingValue = "file")
+public class FileScriptRepository implements ScriptRepository {
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int HEADER_BYTES = 9;
+    private static final long MAP_WINDOW = 1L << 30;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long FLUSH_CHECK_MS = 100;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+
+    private final ScriptProperties.Repository settings;
+    private final Path directory;
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ConcurrentHashMap<String, ScriptInfo> scripts = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Write> pending = new LinkedBlockingQueue<>();
+    private final Thread writer = new Thread(this::writeLoop, "script-repository-writer");
+
+    private FileChannel segment;
+    private long segmentNumber;
+    private long segmentSize;
+    private long bytesSinceSnapshot;
+    private volatile boolean closed;
+
+    public FileScriptRepository(ScriptProperties properties) {
+        this.settings = properties.getRepository();
+        this.directory = Path.of(settings.getDirectory());
+    }
+
+    //Replay the latest snapshot and the segments after it, then start writing to a fresh segment
+    @PostConstruct
+    public void open() {
+        try {
+            Files.createDirectories(directory);
+            deleteFiles(path -> path.getFileName().toString().endsWith(".tmp"));
+            long snapshot = numbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).stream().max(Long::compare).orElse(-1L);
+            long firstSegment = 0;
+            if (snapshot >= 0) {
+                replay(snapshotPath(snapshot));
+                firstSegment = snapshot;
+            }
+            long lastSegment = firstSegment - 1;
+            for (long number : numbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                if (number >= firstSegment) {
+                    bytesSinceSnapshot += replay(segmentPath(number));
+                    lastSegment = number;
+                }
+            }
+            //a torn tail stays in its segment, new records go to the next one
+            openSegment(lastSegment + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void save(ScriptInfo scriptInfo) {
+        scripts.put(scriptInfo.getId(), scriptInfo);
+        pending.add(new Write(scriptInfo.getId(), null, false));
+    }
+
+    @Override
+    public ScriptInfo findById(String id) {
+        return scripts.get(id);
+    }
+
+    @Override
+    public Collection<ScriptInfo> findAll() {
+        return scripts.values();
+    }
+
+    @Override
+    public ScriptInfo remove(String id) {
+        ScriptInfo removed = scripts.remove(id);
+        if (removed != null) {
+            pending.add(new Write(id, null, false));
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean remove(String id, ScriptInfo expected) {
+        if (!scripts.remove(id, expected)) {
+            return false;
+        }
+        pending.add(new Write(id, null, false));
+        return true;
+    }
+
+    @Override
+    public int count() {
+        return scripts.size();
+    }
+
+    //Wait until everything saved so far is on disk
+    public void flush() throws InterruptedException {
+        await(new Write(null, new CountDownLatch(1), false));
+    }
+
+    //Not interrupting the writer: an interrupt would close the FileChannel mid-write.
+    //The writer stops only after the close marker, so everything queued before it is written first
+    @PreDestroy
+    public void close() throws InterruptedException {
+        closed = true;
+        await(new Write(null, new CountDownLatch(1), true));
+        writer.join();
+        try {
+            segment.close();
+        } catch (IOException e) {
+            //already synced, nothing to recover
+        }
+    }
+
+    //Returns once the marker was handled, or right away when the writer is gone and never will
+    private void await(Write marker) throws InterruptedException {
+        pending.add(marker);
+        while (writer.isAlive()) {
+            if (marker.flushed().await(FLUSH_CHECK_MS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Write> batch = new ArrayList<>();
+        boolean stop = false;
+        while (!stop) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            pending.drainTo(batch, Math.max(1, settings.getBatchSize()) - 1);
+            stop = batch.stream().anyMatch(Write::close);
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Write> batch) {
+        //last write per id wins, the live state is read now rather than when it was saved
+        Map<String, Write> latest = new LinkedHashMap<>();
+        List<CountDownLatch> flushed = new ArrayList<>();
+        for (Write write : batch) {
+            if (write.flushed() != null) {
+                flushed.add(write.flushed());
+            } else {
+                latest.put(write.id(), write);
+            }
+        }
+        try {
+            List<ByteBuffer> records = new ArrayList<>(latest.size());
+            for (String id : latest.keySet()) {
+                ScriptInfo scriptInfo = scripts.get(id);
+                records.add(scriptInfo != null ? encodePut(scriptInfo) : encode(DELETE, id.getBytes(StandardCharsets.UTF_8)));
+            }
+            long written = writeAll(segment, records);
+            segment.force(false);
+            segmentSize += written;
+            bytesSinceSnapshot += written;
+            if (bytesSinceSnapshot >= settings.getCompactAfterBytes()) {
+                compact();
+            } else if (segmentSize >= settings.getSegmentBytes()) {
+                openSegment(segmentNumber + 1);
+            }
+        } catch (IOException e) {
+            //the heap map still has the state, write it again after a pause unless shutting down
+            if (!closed) {
+                latest.values().forEach(pending::add);
+                pause();
+            }
+        } finally {
+            flushed.forEach(CountDownLatch::countDown);
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //New segment N, snapshot of the map as snapshot-N, then segments and snapshots before N are dropped.
+    //Runs on the writer thread, so every record in segment N and later is newer than the snapshot.
+    private void compact() throws IOException {
+        long number = segmentNumber + 1;
+        openSegment(number);
+        Path temp = directory.resolve(SNAPSHOT_PREFIX + String.format("%012d", number) + SNAPSHOT_SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            List<ByteBuffer> records = new ArrayList<>();
+            for (ScriptInfo scriptInfo : scripts.values()) {
+                records.add(encodePut(scriptInfo));
+                if (records.size() >= settings.getBatchSize()) {
+                    writeAll(channel, records);
+                    records.clear();
+                }
+            }
+            writeAll(channel, records);
+            channel.force(true);
+        }
+        Files.move(temp, snapshotPath(number), StandardCopyOption.ATOMIC_MOVE);
+        deleteFiles(path -> {
+            String name = path.getFileName().toString();
+            return (isNumbered(name, SEGMENT_PREFIX, SEGMENT_SUFFIX) && number(name, SEGMENT_PREFIX, SEGMENT_SUFFIX) < number)
+                    || (isNumbered(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) && number(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < number);
+        });
+        bytesSinceSnapshot = 0;
+    }
+
+    private void openSegment(long number) throws IOException {
+        if (segment != null) {
+            segment.close();
+        }
+        segment = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentNumber = number;
+        segmentSize = segment.size();
+    }
+
+    //Memory-maps the file window by window and applies every complete record, returns the bytes read
+    private long replay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position));
+                int consumed = replayWindow(window);
+                if (consumed == 0) {
+                    break;
+                }
+                position += consumed;
+            }
+            return position;
+        }
+    }
+
+    private int replayWindow(MappedByteBuffer window) throws IOException {
+        CRC32 crc = new CRC32();
+        int start = 0;
+        while (window.remaining() >= HEADER_BYTES) {
+            int length = window.getInt();
+            int checksum = window.getInt();
+            byte type = window.get();
+            if (length < 0 || length > window.remaining()) {
+                //torn tail or a record continuing in the next window
+                break;
+            }
+            byte[] payload = new byte[length];
+            window.get(payload);
+            crc.reset();
+            crc.update(type);
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            apply(type, payload);
+            start = window.position();
+        }
+        return start;
+    }
+
+    private void apply(byte type, byte[] payload) throws IOException {
+        if (type == PUT) {
+            ScriptInfo scriptInfo = MapperScript.mapToScriptInfo(mapper.readValue(payload, ScriptRecord.class));
+            scripts.put(scriptInfo.getId(), scriptInfo);
+        } else if (type == DELETE) {
+            scripts.remove(new String(payload, StandardCharsets.UTF_8));
+        }
+    }
+
+    private ByteBuffer encodePut(ScriptInfo scriptInfo) throws IOException {
+        return encode(PUT, mapper.writeValueAsBytes(MapperScript.mapToScriptRecord(scriptInfo)));
+    }
+
+    private static ByteBuffer encode(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(type).put(payload);
+        return buffer.flip();
+    }
+
+    private static long writeAll(FileChannel channel, List<ByteBuffer> records) throws IOException {
+        ByteBuffer[] buffers = records.toArray(new ByteBuffer[0]);
+        long written = 0;
+        while (buffers.length > 0 && buffers[buffers.length - 1].hasRemaining()) {
+            written += channel.write(buffers);
+        }
+        return written;
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(SEGMENT_PREFIX + String.format("%012d", number) + SEGMENT_SUFFIX);
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(SNAPSHOT_PREFIX + String.format("%012d", number) + SNAPSHOT_SUFFIX);
+    }
+
+    private List<Long> numbers(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> isNumbered(name, prefix, suffix))
+                    .map(name -> number(name, prefix, suffix))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private void deleteFiles(Predicate<Path> filter) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(filter).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static boolean isNumbered(String name, String prefix, String suffix) {
+        return name.startsWith(prefix) && name.endsWith(suffix)
+                && name.substring(prefix.length(), name.length() - suffix.length()).chars().allMatch(Character::isDigit);
+    }
+
+    private static long number(String name, String prefix, String suffix) {
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    //id to persist, or a flush marker
+    private record Write(String id, CountDownLatch flushed, boolean close) {
+    }
+}
@@ -0,0 +1,294 @@
+package com.offer.java.offer.repository;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.QueuedScript;
+import com.offer.java.offer.dto.ScriptRecord;
+import com.offer.java.offer.dto.ScriptResultDTO;
+import com.offer.java.offer.dto.Status;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+//Work queue in a directory shared by every node, for several instances on one machine or on a shared volume.
+//A script's state is the directory its file is in and a rename is the transition, so the atomic rename decides
+//which node gets a script: queue/<priority>-<submit millis>-<id>.json -> claimed/<node>--<same name> -> results/<id>.json.
+//Live nodes touch nodes/<node>; claims of a node not seen for claim-timeout-ms go back to the queue.
+//Results are removed with their script, and past script.retention.max-age-ms in case the node that ran it is gone.
+@Repository
+@ConditionalOnProperty(name = "script.cluster.queue", havingValue = "file")
+public class FileWorkQueue implements WorkQueue {
+
+    private static final String JSON = ".json";
+    private static final String CLAIM_SEPARATOR = "--";
+
+    private final ScriptProperties.Cluster settings;
+    private final int capacity;
+    private final long resultMaxAgeMs;
+    private final String nodeId;
+    private final Path queue;
+    private final Path claimed;
+    private final Path results;
+    private final Path nodes;
+    private final Path temp;
+    private final ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "work-queue-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FileWorkQueue(ScriptProperties properties) {
+        this.settings = properties.getCluster();
+        this.capacity = properties.getExecutor().getQueueCapacity();
+        this.resultMaxAgeMs = properties.getRetention().getMaxAgeMs();
+        this.nodeId = settings.getNodeId().isEmpty() ? UUID.randomUUID().toString() : settings.getNodeId();
+        Path directory = Path.of(settings.getDirectory());
+        this.queue = directory.resolve("queue");
+        this.claimed = directory.resolve("claimed");
+        this.results = directory.resolve("results");
+        this.nodes = directory.resolve("nodes");
+        this.temp = directory.resolve("tmp");
+    }
+
+    @PostConstruct
+    public void open() {
+        try {
+            for (Path path : List.of(queue, claimed, results, nodes, temp)) {
+                Files.createDirectories(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        beat();
+        long interval = Math.max(1, settings.getClaimTimeoutMs() / 3);
+        heartbeat.scheduleWithFixedDelay(this::beat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        heartbeat.shutdownNow();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public boolean offer(QueuedScript script) {
+        if (size() >= capacity) {
+            return false;
+        }
+        write(queue.resolve(fileName(script)), script);
+        return true;
+    }
+
+    @Override
+    public QueuedScript claim() {
+        for (String name : list(queue)) {
+            Path target = claimed.resolve(nodeId + CLAIM_SEPARATOR + name);
+            try {
+                Files.move(queue.resolve(name), target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                //claimed by another node first
+                continue;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return read(target, QueuedScript.class);
+        }
+        return null;
+    }
+
+    @Override
+    public void release(QueuedScript script) {
+        String name = fileName(script);
+        move(claimed.resolve(nodeId + CLAIM_SEPARATOR + name), queue.resolve(name));
+    }
+
+    @Override
+    public void complete(ScriptRecord record) {
+        write(results.resolve(record.getId() + JSON), record);
+        String suffix = "-" + record.getId() + JSON;
+        for (String name : list(claimed)) {
+            if (name.startsWith(nodeId + CLAIM_SEPARATOR) && name.endsWith(suffix)) {
+                delete(claimed.resolve(name));
+            }
+        }
+    }
+
+    //Checked in the order a script moves through, so a script moving meanwhile is still found
+    @Override
+    public ScriptRecord find(String id) {
+        String suffix = "-" + id + JSON;
+        //a claim or requeue moving the file between the two scans hides it from one pass, so look twice
+        for (int pass = 0; pass < 2; pass++) {
+            ScriptRecord finished = read(results.resolve(id + JSON), ScriptRecord.class);
+            if (finished != null) {
+                return finished;
+            }
+            for (Path directory : List.of(queue, claimed)) {
+                for (String name : list(directory)) {
+                    if (name.endsWith(suffix)) {
+                        QueuedScript script = read(directory.resolve(name), QueuedScript.class);
+                        if (script != null) {
+                            return toRecord(script, directory == queue ? Status.QUEUE : Status.PROCESSING);
+                        }
+                    }
+                }
+            }
+        }
+        return read(results.resolve(id + JSON), ScriptRecord.class);
+    }
+
+    @Override
+    public void remove(String id) {
+        delete(results.resolve(id + JSON));
+    }
+
+    @Override
+    public int size() {
+        return list(queue).size();
+    }
+
+    private void beat() {
+        try {
+            Path beat = nodes.resolve(nodeId);
+            if (Files.exists(beat)) {
+                Files.setLastModifiedTime(beat, FileTime.fromMillis(System.currentTimeMillis()));
+            } else {
+                Files.createFile(beat);
+            }
+            recoverStaleClaims();
+            removeExpiredResults();
+        } catch (IOException e) {
+            //next beat retries, other nodes only requeue after claim-timeout-ms
+        }
+    }
+
+    //Claims of nodes that stopped beating go back to the queue, or are dropped when their result was published
+    private void recoverStaleClaims() throws IOException {
+        long staleBefore = System.currentTimeMillis() - settings.getClaimTimeoutMs();
+        for (String name : list(claimed)) {
+            int separator = name.indexOf(CLAIM_SEPARATOR);
+            String node = name.substring(0, separator);
+            if (node.equals(nodeId)) {
+                continue;
+            }
+            Path beat = nodes.resolve(node);
+            if (Files.exists(beat) && Files.getLastModifiedTime(beat).toMillis() >= staleBefore) {
+                continue;
+            }
+            String queued = name.substring(separator + CLAIM_SEPARATOR.length());
+            String id = queued.substring(queued.indexOf('-', queued.indexOf('-') + 1) + 1, queued.length() - JSON.length());
+            if (Files.exists(results.resolve(id + JSON))) {
+                delete(claimed.resolve(name));
+            } else {
+                move(claimed.resolve(name), queue.resolve(queued));
+            }
+        }
+    }
+
+    //Every node sweeps, a result another node already removed is skipped
+    private void removeExpiredResults() throws IOException {
+        if (resultMaxAgeMs <= 0) {
+            return;
+        }
+        long expiredBefore = System.currentTimeMillis() - resultMaxAgeMs;
+        for (String name : list(results)) {
+            try {
+                if (Files.getLastModifiedTime(results.resolve(name)).toMillis() < expiredBefore) {
+                    delete(results.resolve(name));
+                }
+            } catch (NoSuchFileException e) {
+                //removed meanwhile
+            }
+        }
+    }
+
+    //Priority first, then submit time: the sorted listing is the claim order
+    private static String fileName(QueuedScript script) {
+        return script.getPriority().ordinal() + "-" + String.format("%013d", script.getSubmittedAt()) + "-" + script.getId() + JSON;
+    }
+
+    private static ScriptRecord toRecord(QueuedScript script, Status status) {
+        ScriptRecord record = new ScriptRecord();
+        record.setId(script.getId());
+        record.setScript(script.getScript());
+        ScriptResultDTO result = new ScriptResultDTO();
+        result.setStatus(status);
+        record.setResult(result);
+        record.setStartTime(script.getSubmittedAt());
+        record.setDuration(System.currentTimeMillis() - script.getSubmittedAt());
+        record.setLimits(script.getLimits());
+        record.setTemplate(script.getTemplate());
+        record.setArguments(script.getArguments());
+        record.setCallbackUrl(script.getCallbackUrl());
+        return record;
+    }
+
+    //Written aside and renamed, readers never see a partial file
+    private void write(Path path, Object value) {
+        Path file = temp.resolve(UUID.randomUUID() + ".tmp");
+        try {
+            Files.write(file, mapper.writeValueAsBytes(value));
+            Files.move(file, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            delete(file);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //Null when the file is gone, it moved on to the next state
+    private <T> T read(Path path, Class<T> type) {
+        try {
+            return mapper.readValue(Files.readAllBytes(path), type);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void move(Path from, Path to) {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            //moved by another node in the meantime
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            //a leftover file is ignored by readers
+        }
+    }
+
+    private static List<String> list(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(JSON))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.offer.java.offer.repository;
+
+import com.offer.java.offer.dto.ScriptInfo;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Keeps scripts only in heap, everything is lost on restart
+@Repository
+@ConditionalOnProperty(name = "script.repository.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryScriptRepository implements ScriptRepository {
+
+    private final ConcurrentHashMap<String, ScriptInfo> scripts = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(ScriptInfo scriptInfo) {
+        scripts.put(scriptInfo.getId(), scriptInfo);
+    }
+
+    @Override
+    public ScriptInfo findById(String id) {
+        return scripts.get(id);
+    }
+
+    @Override
+    public Collection<ScriptInfo> findAll() {
+        return scripts.values();
+    }
+
+    @Override
+    public ScriptInfo remove(String id) {
+        return scripts.remove(id);
+    }
+
+    @Override
+    public boolean remove(String id, ScriptInfo expected) {
+        return scripts.remove(id, expected);
+    }
+
+    @Override
+    public int count() {
+        return scripts.size();
+    }
+}
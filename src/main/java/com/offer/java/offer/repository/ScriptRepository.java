@@ -0,0 +1,24 @@
+package com.offer.java.offer.repository;
+
+import com.offer.java.offer.dto.ScriptInfo;
+
+import java.util.Collection;
+
+//Where script state lives; selected with script.repository.type
+public interface ScriptRepository {
+
+    //Insert or update; the stored state is the ScriptInfo as it is when the repository persists it
+    void save(ScriptInfo scriptInfo);
+
+    ScriptInfo findById(String id);
+
+    //Live, weakly consistent view
+    Collection<ScriptInfo> findAll();
+
+    ScriptInfo remove(String id);
+
+    //Remove only if the id still maps to this instance
+    boolean remove(String id, ScriptInfo expected);
+
+    int count();
+}
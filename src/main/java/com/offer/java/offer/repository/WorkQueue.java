@@ -0,0 +1,29 @@
+package com.offer.java.offer.repository;
+
+import com.offer.java.offer.dto.QueuedScript;
+import com.offer.java.offer.dto.ScriptRecord;
+
+//Non-blocking submits shared by every node; any node claims them, and their final state is readable from any node.
+//Selected with script.cluster.queue, absent when scripts run on the node that received them
+public interface WorkQueue {
+
+    //False when the queue already holds script.executor.queue-capacity scripts
+    boolean offer(QueuedScript script);
+
+    //Next script for this node, highest priority first and oldest first within a priority; null when none waits
+    QueuedScript claim();
+
+    //Put a claimed script back, for a node that could not start it
+    void release(QueuedScript script);
+
+    //Publish the final state of a claimed script and drop the claim
+    void complete(ScriptRecord record);
+
+    //State of a script on any node: queued, running or finished; null when the queue never had it
+    ScriptRecord find(String id);
+
+    //Forget the published final state of a script, deleted or evicted on any node
+    void remove(String id);
+
+    int size();
+}
@@ -0,0 +1,54 @@
+package com.offer.java.offer.service;
+
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+
+public class BoundedPriorityQueue<E> extends PriorityBlockingQueue<E> {
+
+    private final int capacity;
+
+    public BoundedPriorityQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized boolean offer(E e) {
+        if (size() >= capacity) {
+            return false;
+        }
+        return super.offer(e);
+    }
+
+    //Offer the elements in order and return how many were queued; atomic queues all of them or none
+    public synchronized int offerAll(List<? extends E> elements, boolean atomic) {
+        int free = capacity - size();
+        if (atomic && elements.size() > free) {
+            return 0;
+        }
+        int count = Math.max(0, Math.min(elements.size(), free));
+        for (int i = 0; i < count; i++) {
+            super.offer(elements.get(i));
+        }
+        return count;
+    }
+
+    //1-based position of the element in take() order, 0 when it is not in the queue
+    @SuppressWarnings("unchecked")
+    public int positionOf(Object element) {
+        int ahead = 0;
+        boolean queued = false;
+        for (E queuedElement : this) {
+            if (queuedElement == element) {
+                queued = true;
+            } else if (((Comparable<Object>) queuedElement).compareTo(element) < 0) {
+                ahead++;
+            }
+        }
+        return queued ? ahead + 1 : 0;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+}
@@ -0,0 +1,81 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.Priority;
+import com.offer.java.offer.dto.ScriptResult;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+@ConditionalOnThreading(Threading.PLATFORM)
+public class BoundedScriptScheduler implements ScriptScheduler {
+
+    private final BoundedPriorityQueue<Runnable> queue;
+    private final ThreadPoolExecutor executor;
+
+    public BoundedScriptScheduler(ScriptProperties properties) {
+        ScriptProperties.Executor settings = properties.getExecutor();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.queue = new BoundedPriorityQueue<>(settings.getQueueCapacity());
+        this.executor = new ThreadPoolExecutor(settings.getPoolSize(), settings.getPoolSize(),
+                0L, TimeUnit.MILLISECONDS, queue,
+                runnable -> new Thread(runnable, "script-worker-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public Future<ScriptResult> submit(String scriptId, Priority priority, Callable<ScriptResult> task) {
+        ScriptTask scriptTask = new ScriptTask(scriptId, priority, task);
+        executor.execute(scriptTask);
+        return scriptTask;
+    }
+
+    //Bypasses execute(), so the workers are started first to take from the queue
+    @Override
+    public int submitAll(List<ScriptTask> tasks, boolean atomic) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Script executor is shut down");
+        }
+        executor.prestartAllCoreThreads();
+        return queue.offerAll(tasks, atomic);
+    }
+
+    @Override
+    public void remove(Future<?> future) {
+        if (future instanceof ScriptTask) {
+            queue.remove(future);
+        }
+    }
+
+    @Override
+    public int getQueuePosition(Future<?> future) {
+        return future instanceof ScriptTask ? queue.positionOf(future) : 0;
+    }
+
+    //Blocking runs stay on the request thread, the servlet pool bounds them
+    @Override
+    public <T> T runBlocking(Callable<T> task) throws Exception {
+        return task.call();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
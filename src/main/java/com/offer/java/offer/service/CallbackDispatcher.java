@@ -0,0 +1,229 @@
+package com.offer.java.offer.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptResponse;
+import com.offer.java.offer.dto.ScriptResult;
+import com.offer.java.offer.dto.StatusOperation;
+import com.offer.java.offer.exception.ApplicationException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+//Posts final results to client callback URLs off the script threads.
+//Deliveries waiting to be sent or retried are capped; a non-2xx answer or an I/O error is retried with exponential backoff.
+@Component
+public class CallbackDispatcher {
+
+    public static final String OUTCOME_DELIVERED = "delivered";
+    public static final String OUTCOME_RETRIED = "retried";
+    public static final String OUTCOME_FAILED = "failed";
+    public static final String OUTCOME_DROPPED = "dropped";
+
+    private static final String HEADER_SCRIPT_ID = "X-Script-Id";
+    private static final String HEADER_ATTEMPT = "X-Callback-Attempt";
+    private static final String MESSAGE_INVALID_URL = "callbackUrl must be an absolute http or https URL";
+    private static final String MESSAGE_FORBIDDEN_HOST = "callbackUrl host is not allowed";
+
+    private final ScriptProperties.Callback settings;
+    private final Set<String> allowedHosts;
+    private final ScriptMetrics metrics;
+    private final ObjectMapper mapper;
+    private final HttpClient client;
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public CallbackDispatcher(ScriptProperties properties, ScriptMetrics metrics, ObjectMapper mapper) {
+        this.settings = properties.getCallback();
+        this.allowedHosts = settings.getAllowedHosts().stream()
+                .map(host -> host.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.metrics = metrics;
+        this.mapper = mapper;
+        //a redirect would skip the host check
+        this.client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofMillis(settings.getTimeoutMs()))
+                .build();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(settings.getPoolSize(), runnable -> {
+            Thread thread = new Thread(runnable, "script-callback-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        metrics.gauge("script.callbacks.pending", "Callbacks queued or waiting for a retry", pending::get);
+    }
+
+    //Checked at submit so a bad URL is a 400 and not a silently failing delivery
+    public URI validate(String callbackUrl) {
+        URI uri = null;
+        try {
+            uri = URI.create(callbackUrl);
+        } catch (IllegalArgumentException e) {
+            //reported below
+        }
+        if (uri == null || uri.getHost() == null || !("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme()))) {
+            throw badRequest(MESSAGE_INVALID_URL, callbackUrl);
+        }
+        if (!isAllowed(uri.getHost())) {
+            throw badRequest(MESSAGE_FORBIDDEN_HOST, callbackUrl);
+        }
+        return uri;
+    }
+
+    //Listed hosts are trusted; without a list every address the host resolves to must be public,
+    //so a callback cannot reach the node itself, the internal network or a cloud metadata endpoint
+    boolean isAllowed(String host) {
+        if (!allowedHosts.isEmpty()) {
+            return allowedHosts.contains(host.toLowerCase(Locale.ROOT));
+        }
+        if (settings.isAllowPrivateAddresses()) {
+            return true;
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (isInternal(address)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    static boolean isInternal(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 16) {
+            //unique local fc00::/7
+            return (bytes[0] & 0xfe) == 0xfc;
+        }
+        //shared address space 100.64.0.0/10
+        return (bytes[0] & 0xff) == 100 && (bytes[1] & 0xc0) == 64;
+    }
+
+    private static ApplicationException badRequest(String message, String callbackUrl) {
+        return new ApplicationException(HttpStatus.BAD_REQUEST, ScriptResponse.builder()
+                .message(message)
+                .id(callbackUrl)
+                .statusOperation(StatusOperation.ERROR)
+                .build());
+    }
+
+    //Returns false when the callback was dropped because too many are pending
+    public boolean dispatch(String callbackUrl, ScriptResult result) {
+        byte[] body;
+        try {
+            body = mapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            metrics.recordCallback(OUTCOME_FAILED);
+            return false;
+        }
+        if (pending.incrementAndGet() > settings.getQueueCapacity()) {
+            pending.decrementAndGet();
+            metrics.recordCallback(OUTCOME_DROPPED);
+            return false;
+        }
+        Delivery delivery = new Delivery(URI.create(callbackUrl), result.getId(), body);
+        try {
+            executor.execute(delivery);
+        } catch (RejectedExecutionException e) {
+            delivery.finish(OUTCOME_DROPPED);
+            return false;
+        }
+        return true;
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    long backoffMs(int attempt) {
+        long delay = settings.getInitialBackoffMs() << Math.min(attempt - 1, 30);
+        return Math.min(delay < 0 ? Long.MAX_VALUE : delay, settings.getMaxBackoffMs());
+    }
+
+    private class Delivery implements Runnable {
+
+        private final URI uri;
+        private final String scriptId;
+        private final byte[] body;
+        private int attempt;
+
+        private Delivery(URI uri, String scriptId, byte[] body) {
+            this.uri = uri;
+            this.scriptId = scriptId;
+            this.body = body;
+        }
+
+        @Override
+        public void run() {
+            attempt++;
+            //checked again before each attempt, the host may resolve elsewhere than at submit
+            if (!isAllowed(uri.getHost())) {
+                finish(OUTCOME_FAILED);
+            } else if (send()) {
+                finish(OUTCOME_DELIVERED);
+            } else if (attempt >= settings.getMaxAttempts()) {
+                finish(OUTCOME_FAILED);
+            } else {
+                metrics.recordCallback(OUTCOME_RETRIED);
+                try {
+                    executor.schedule(this, backoffMs(attempt), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    finish(OUTCOME_FAILED);
+                }
+            }
+        }
+
+        private boolean send() {
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofMillis(settings.getTimeoutMs()))
+                    .header("Content-Type", "application/json")
+                    .header(HEADER_ATTEMPT, String.valueOf(attempt))
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+            if (scriptId != null) {
+                request.header(HEADER_SCRIPT_ID, scriptId);
+            }
+            try {
+                int status = client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+                return status >= 200 && status < 300;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        private void finish(String outcome) {
+            pending.decrementAndGet();
+            metrics.recordCallback(outcome);
+        }
+    }
+}
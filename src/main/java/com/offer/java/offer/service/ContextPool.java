@@ -0,0 +1,172 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ContextPoolStats;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.graalvm.polyglot.Engine;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+public class ContextPool {
+
+    private final Engine engine;
+    private final ScriptProperties.ContextPool properties;
+
+    private final LinkedBlockingDeque<PooledContext> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    //idle plus borrowed plus being created, a slot is reserved before a context is built
+    private final AtomicInteger total = new AtomicInteger();
+    private volatile boolean closed;
+    private final ExecutorService refiller = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "context-pool-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong creations = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+
+    public ContextPool(Engine engine, ScriptProperties properties, ScriptMetrics metrics) {
+        this.engine = engine;
+        this.properties = properties.getContextPool();
+        this.permits = new Semaphore(this.properties.getSize(), true);
+        metrics.gauge("script.context.pool.idle", "Idle pooled contexts", idle::size);
+        metrics.gauge("script.context.pool.in.use", "Borrowed pooled contexts", () -> this.properties.getSize() - permits.availablePermits());
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        if (properties.isWarmUp()) {
+            refill();
+        }
+    }
+
+    public PooledContext borrow() throws InterruptedException, TimeoutException {
+        if (!permits.tryAcquire()) {
+            waits.incrementAndGet();
+            if (!permits.tryAcquire(properties.getBorrowTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("No free script context within " + properties.getBorrowTimeoutMs() + " ms");
+            }
+        }
+        try {
+            PooledContext context = idle.pollFirst();
+            if (context != null) {
+                hits.incrementAndGet();
+            } else if (reserve()) {
+                context = create();
+            } else {
+                //every slot is taken by contexts the refiller is still building, take the next one it hands over
+                context = idle.pollFirst(properties.getBorrowTimeoutMs(), TimeUnit.MILLISECONDS);
+                if (context == null) {
+                    permits.release();
+                    throw new TimeoutException("No free script context within " + properties.getBorrowTimeoutMs() + " ms");
+                }
+            }
+            scheduleRefill();
+            return context;
+        } catch (RuntimeException | InterruptedException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public void release(PooledContext context) {
+        try {
+            context.afterUse();
+            if (context.isBroken() || context.getUses() >= properties.getMaxUses()) {
+                discard(context);
+                scheduleRefill();
+            } else {
+                idle.offerFirst(context);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public ContextPoolStats getStats() {
+        return ContextPoolStats.builder()
+                .size(properties.getSize())
+                .idle(idle.size())
+                .inUse(properties.getSize() - permits.availablePermits())
+                .hits(hits.get())
+                .waits(waits.get())
+                .creations(creations.get())
+                .recycled(recycled.get())
+                .build();
+    }
+
+    @PreDestroy
+    public void close() {
+        closed = true;
+        refiller.shutdownNow();
+        PooledContext context;
+        while ((context = idle.pollFirst()) != null) {
+            discard(context);
+        }
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = total.get();
+            if (current >= properties.getSize()) {
+                return false;
+            }
+        } while (!total.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    //Builds a context in a slot taken by reserve(), the slot is given back when building fails
+    private PooledContext create() {
+        try {
+            PooledContext context = new PooledContext(engine);
+            creations.incrementAndGet();
+            return context;
+        } catch (RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void discard(PooledContext context) {
+        total.decrementAndGet();
+        recycled.incrementAndGet();
+        context.close();
+    }
+
+    private void scheduleRefill() {
+        if (idle.size() < properties.getMinIdle() && !closed) {
+            try {
+                refiller.execute(this::refill);
+            } catch (RejectedExecutionException e) {
+                //closed in between
+            }
+        }
+    }
+
+    private void refill() {
+        try {
+            while (!closed && idle.size() < properties.getMinIdle() && reserve()) {
+                PooledContext context = create();
+                idle.offerLast(context);
+                if (closed && idle.remove(context)) {
+                    discard(context);
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!closed) {
+                log.warn("Could not refill the script context pool", e);
+            }
+        }
+    }
+}
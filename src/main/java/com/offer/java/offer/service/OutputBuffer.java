@@ -0,0 +1,257 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.offer.java.offer.config.ScriptProperties.OutputOverflow.TAIL;
+
+//Append-only script output that can be read from any byte offset while the script is still writing.
+//Heap usage is capped: past the cap it keeps only the tail (ring buffer) or spills to a memory-mapped file.
+public class OutputBuffer extends OutputStream {
+
+    private final Object lock;
+    private final ScriptProperties.Output settings;
+    private final int memoryLimit;
+    private final Runnable onWrite;
+
+    private byte[] memory = new byte[256];
+    private SpillFile spill;
+    //TAIL: every byte ever written, SPILL: bytes stored
+    private long size;
+    //SPILL: bytes dropped past max-spill-bytes
+    private long dropped;
+    //rebuilt from a stored tail, bytes before it are gone
+    private boolean partial;
+
+    OutputBuffer(Object lock, ScriptProperties.Output settings) {
+        this(lock, settings, () -> {
+        });
+    }
+
+    OutputBuffer(Object lock, ScriptProperties.Output settings, Runnable onWrite) {
+        this.lock = lock;
+        this.settings = settings;
+        this.memoryLimit = Math.max(1, settings.getMemoryLimitBytes());
+        this.onWrite = onWrite;
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        synchronized (lock) {
+            if (settings.getOverflow() == TAIL) {
+                writeTail(b, off, len);
+            } else {
+                writeSpill(b, off, len);
+            }
+            lock.notifyAll();
+        }
+        onWrite.run();
+    }
+
+    public long size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    //Bytes still readable, held in heap or in the spill file
+    public long retainedBytes() {
+        synchronized (lock) {
+            return size - startOffset();
+        }
+    }
+
+    public boolean isTruncated() {
+        synchronized (lock) {
+            return startOffset() > 0 || dropped > 0 || partial;
+        }
+    }
+
+    void markPartial() {
+        synchronized (lock) {
+            partial = true;
+        }
+    }
+
+    //Up to maxLength bytes from offset, cut so that a UTF-8 character is never split
+    public OutputChunk read(long offset, int maxLength) {
+        synchronized (lock) {
+            long from = Math.max(offset, startOffset());
+            boolean truncated = from > offset;
+            if (truncated) {
+                while (from < size && isContinuationByte(from)) {
+                    from++;
+                }
+            }
+            if (from >= size) {
+                return new OutputChunk(Math.max(from, offset), new byte[0], truncated);
+            }
+            long to = Math.min(size, from + maxLength);
+            if (to < size) {
+                while (to > from && isContinuationByte(to)) {
+                    to--;
+                }
+            }
+            byte[] data = new byte[(int) (to - from)];
+            copy(from, data);
+            return new OutputChunk(from, data, truncated);
+        }
+    }
+
+    //At most the last maxLength bytes, starting on a character boundary; truncated when anything came before them
+    public OutputChunk tail(int maxLength) {
+        synchronized (lock) {
+            long from = Math.max(startOffset(), size - Math.max(0, maxLength));
+            while (from < size && isContinuationByte(from)) {
+                from++;
+            }
+            byte[] data = new byte[(int) (size - from)];
+            copy(from, data);
+            return new OutputChunk(from, data, from > 0 || isTruncated());
+        }
+    }
+
+    //Drop heap and disk storage, the buffer is not readable afterwards
+    @Override
+    public void close() {
+        synchronized (lock) {
+            memory = new byte[0];
+            if (spill != null) {
+                spill.close();
+                spill = null;
+            }
+            size = 0;
+        }
+    }
+
+    private long startOffset() {
+        return settings.getOverflow() == TAIL ? Math.max(0, size - memoryLimit) : 0;
+    }
+
+    private void writeTail(byte[] b, int off, int len) {
+        if (len >= memoryLimit) {
+            off += len - memoryLimit;
+            size += len - memoryLimit;
+            len = memoryLimit;
+        }
+        if (memory.length < memoryLimit && size + len > memory.length) {
+            memory = Arrays.copyOf(memory, (int) Math.min(memoryLimit, Math.max(size + len, memory.length * 2L)));
+        }
+        int position = (int) (size % memoryLimit);
+        int first = Math.min(len, memoryLimit - position);
+        System.arraycopy(b, off, memory, position, first);
+        System.arraycopy(b, off + first, memory, 0, len - first);
+        size += len;
+    }
+
+    private void writeSpill(byte[] b, int off, int len) {
+        if (spill == null && size + len <= memoryLimit) {
+            if (size + len > memory.length) {
+                memory = Arrays.copyOf(memory, (int) Math.min(memoryLimit, Math.max(size + len, memory.length * 2L)));
+            }
+            System.arraycopy(b, off, memory, (int) size, len);
+            size += len;
+            return;
+        }
+        try {
+            if (spill == null) {
+                spill = new SpillFile(settings.getSpillDirectory(), settings.getSpillSegmentBytes());
+                spill.write(0, memory, 0, (int) size);
+                memory = null;
+            }
+            int stored = (int) Math.max(0, Math.min(len, settings.getMaxSpillBytes() - size));
+            spill.write(size, b, off, stored);
+            size += stored;
+            dropped += len - stored;
+        } catch (IOException e) {
+            dropped += len;
+        }
+    }
+
+    private boolean isContinuationByte(long offset) {
+        byte[] single = new byte[1];
+        copy(offset, single);
+        return (single[0] & 0xC0) == 0x80;
+    }
+
+    private void copy(long from, byte[] target) {
+        if (spill != null) {
+            spill.read(from, target);
+        } else if (settings.getOverflow() == TAIL) {
+            int position = (int) (from % memoryLimit);
+            int first = Math.min(target.length, memoryLimit - position);
+            System.arraycopy(memory, position, target, 0, first);
+            System.arraycopy(memory, 0, target, first, target.length - first);
+        } else {
+            System.arraycopy(memory, (int) from, target, 0, target.length);
+        }
+    }
+
+    private static class SpillFile {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final int segmentSize;
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+        SpillFile(String directory, int segmentSize) throws IOException {
+            Path dir = directory.isEmpty() ? Path.of(System.getProperty("java.io.tmpdir")) : Path.of(directory);
+            this.path = Files.createTempFile(dir, "script-output-", ".spill");
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            this.segmentSize = segmentSize;
+        }
+
+        void write(long position, byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int index = (int) (position / segmentSize);
+                int inSegment = (int) (position % segmentSize);
+                while (segments.size() <= index) {
+                    segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * segmentSize, segmentSize));
+                }
+                int count = Math.min(len, segmentSize - inSegment);
+                segments.get(index).put(inSegment, b, off, count);
+                position += count;
+                off += count;
+                len -= count;
+            }
+        }
+
+        void read(long position, byte[] target) {
+            int off = 0;
+            while (off < target.length) {
+                int index = (int) (position / segmentSize);
+                int inSegment = (int) (position % segmentSize);
+                int count = Math.min(target.length - off, segmentSize - inSegment);
+                segments.get(index).get(inSegment, target, off, count);
+                position += count;
+                off += count;
+            }
+        }
+
+        //Drops the segments, their mappings go when they are collected, then removes the file
+        void close() {
+            segments.clear();
+            try {
+                channel.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                //DELETE_ON_CLOSE removes it as well
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.offer.java.offer.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class OutputChunk {
+    //offset of the first returned byte, past the requested one when that part was dropped
+    private final long offset;
+    private final byte[] data;
+    private final boolean truncated;
+
+    public long getNextOffset() {
+        return offset + data.length;
+    }
+}
@@ -0,0 +1,45 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.dto.ExecutionTrace;
+
+import java.util.concurrent.TimeUnit;
+
+//System.nanoTime marks of one run, turned into its ExecutionTrace once the result is mapped
+class PhaseTimer {
+
+    private final long submittedAt;
+    private final long startedAt;
+    private Long contextReadyAt;
+    private Long evalDoneAt;
+    private boolean pooled;
+
+    PhaseTimer(long submittedAt, long startedAt) {
+        this.submittedAt = submittedAt;
+        this.startedAt = startedAt;
+    }
+
+    void contextReady(boolean pooled) {
+        this.contextReadyAt = System.nanoTime();
+        this.pooled = pooled;
+    }
+
+    //Only the first call counts, it is made as soon as eval returns or throws
+    void evalDone() {
+        if (evalDoneAt == null) {
+            evalDoneAt = System.nanoTime();
+        }
+    }
+
+    //Phases a failed run never reached take no time
+    ExecutionTrace finish() {
+        long mappedAt = System.nanoTime();
+        long evalDone = evalDoneAt == null ? mappedAt : evalDoneAt;
+        long contextReady = contextReadyAt == null ? evalDone : contextReadyAt;
+        return new ExecutionTrace(micros(startedAt - submittedAt), micros(contextReady - startedAt), pooled,
+                micros(evalDone - contextReady), micros(mappedAt - evalDone));
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+    }
+}
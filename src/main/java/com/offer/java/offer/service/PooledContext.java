@@ -0,0 +1,66 @@
+package com.offer.java.offer.service;
+
+import lombok.Getter;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@Getter
+public class PooledContext {
+
+    private final Context context;
+    private final RedirectOutputStream out = new RedirectOutputStream();
+    private final RedirectOutputStream err = new RedirectOutputStream();
+    private int uses;
+    private boolean broken;
+
+    PooledContext(Engine engine) {
+        this.context = Context.newBuilder("js")
+                .engine(engine)
+                .out(out)
+                .err(err)
+                .build();
+        this.context.initialize("js");
+    }
+
+    //Bind the script output of the next run to the given streams
+    public void redirect(OutputStream stdout, OutputStream stderr) {
+        out.target = stdout;
+        err.target = stderr;
+    }
+
+    public void markBroken() {
+        broken = true;
+    }
+
+    void afterUse() {
+        uses++;
+        out.target = OutputStream.nullOutputStream();
+        err.target = OutputStream.nullOutputStream();
+    }
+
+    void close() {
+        context.close(true);
+    }
+
+    private static class RedirectOutputStream extends OutputStream {
+        private volatile OutputStream target = OutputStream.nullOutputStream();
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+    }
+}
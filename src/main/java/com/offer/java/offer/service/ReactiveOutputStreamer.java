@@ -0,0 +1,81 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.OutputChannel;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Raw stdout or stderr of a script as a Flux that ends when the script completes.
+//Driven by output listeners and downstream demand, no thread waits for a slow script or a slow client.
+@Component
+public class ReactiveOutputStreamer {
+
+    private final ScriptExecutionService scriptExecutionService;
+    private final ScriptProperties.Stream properties;
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    public ReactiveOutputStreamer(ScriptExecutionService scriptExecutionService, ScriptProperties properties) {
+        this.scriptExecutionService = scriptExecutionService;
+        this.properties = properties.getStream();
+    }
+
+    public Flux<DataBuffer> stream(String id, OutputChannel channel, long offset) {
+        ScriptOutput output = scriptExecutionService.getScriptOutput(id);
+        OutputBuffer buffer = channel == OutputChannel.STDERR ? output.getErr() : output.getOut();
+        return Flux.create(sink -> new Pump(output, buffer, Math.max(0, offset), sink).start());
+    }
+
+    private class Pump {
+
+        private final ScriptOutput output;
+        private final OutputBuffer buffer;
+        private final FluxSink<DataBuffer> sink;
+        //drains requested while one is running, the running one loops again instead of a second thread entering
+        private final AtomicInteger pending = new AtomicInteger();
+        private long offset;
+
+        private Pump(ScriptOutput output, OutputBuffer buffer, long offset, FluxSink<DataBuffer> sink) {
+            this.output = output;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.sink = sink;
+        }
+
+        void start() {
+            Runnable unsubscribe = output.addListener(this::drain);
+            sink.onDispose(unsubscribe::run);
+            sink.onRequest(n -> drain());
+        }
+
+        private void drain() {
+            if (pending.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                if (sink.isCancelled()) {
+                    return;
+                }
+                //read before the output, so nothing written before completion is missed
+                boolean completed = output.isCompleted();
+                while (sink.requestedFromDownstream() > 0) {
+                    OutputChunk chunk = buffer.read(offset, properties.getChunkSize());
+                    offset = chunk.getNextOffset();
+                    if (chunk.getData().length == 0) {
+                        break;
+                    }
+                    sink.next(bufferFactory.wrap(chunk.getData()));
+                }
+                if (completed && offset >= buffer.size()) {
+                    sink.complete();
+                    return;
+                }
+            } while (pending.decrementAndGet() != 0);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptLimits;
+import com.offer.java.offer.dto.ScriptResult;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.offer.java.offer.dto.Status.COMPLETED;
+
+//Results of cache=true runs by script hash. The first submit owns the run, identical submits share its future.
+//Only COMPLETED results stay cached, failed runs are dropped once their waiters are answered.
+@Component
+public class ResultCache {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ScriptProperties.ResultCache settings;
+    private final ScriptMetrics metrics;
+
+    public ResultCache(ScriptProperties properties, ScriptMetrics metrics) {
+        this.settings = properties.getResultCache();
+        this.metrics = metrics;
+        metrics.gauge("script.cache.size", "Results held by the result cache", entries::size);
+    }
+
+    //Limits are part of the key, the same script can end differently under other limits
+    public static String key(String script, ScriptLimits limits) {
+        return SourceCache.hash(script) + ":" + limits;
+    }
+
+    //The live entry for the key; its scriptId equals the given one when the caller has to run the script
+    public Entry reserve(String key, String scriptId) {
+        while (true) {
+            Entry created = new Entry(key, scriptId, new CompletableFuture<>(), System.currentTimeMillis());
+            Entry existing = entries.putIfAbsent(key, created);
+            if (existing == null) {
+                metrics.recordCacheLookup(false);
+                evictIfFull();
+                return created;
+            }
+            if (!isExpired(existing)) {
+                metrics.recordCacheLookup(true);
+                return existing;
+            }
+            entries.remove(key, existing);
+        }
+    }
+
+    public void complete(Entry entry, ScriptResult result) {
+        if (entry == null) {
+            return;
+        }
+        if (result.getStatus() != COMPLETED) {
+            entries.remove(entry.key(), entry);
+        }
+        entry.result().complete(result);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean isExpired(Entry entry) {
+        return entry.result().isDone() && System.currentTimeMillis() - entry.createdAt() > settings.getTtlMs();
+    }
+
+    //Expired entries first, then finished ones in map order; runs in flight are kept
+    private void evictIfFull() {
+        if (entries.size() <= settings.getMaxSize()) {
+            return;
+        }
+        entries.values().removeIf(this::isExpired);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > settings.getMaxSize() && iterator.hasNext()) {
+            if (iterator.next().result().isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public record Entry(String key, String scriptId, CompletableFuture<ScriptResult> result, long createdAt) {
+    }
+}
@@ -1,131 +1,681 @@
 package com.offer.java.offer.service;
 
+import com.offer.java.offer.config.ScriptProperties;
 import com.offer.java.offer.dto.*;
 import com.offer.java.offer.exception.ApplicationException;
 import com.offer.java.offer.exception.NotFoundException;
 import com.offer.java.offer.exception.ScriptRunException;
+import com.offer.java.offer.exception.ScriptSyntaxException;
+import com.offer.java.offer.exception.TooManyRequestsException;
 import com.offer.java.offer.mapper.MapperScript;
+import com.offer.java.offer.repository.ScriptRepository;
+import com.offer.java.offer.repository.WorkQueue;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
-import java.io.PrintStream;
-import java.util.Comparator;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.*;
 
 import static com.offer.java.offer.dto.Status.*;
 
 @Service
+@RequiredArgsConstructor
 public class ScriptExecutionService {
 
-    private final ConcurrentHashMap<String, ScriptInfo> scriptStorage = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, ByteArrayOutputStream> outputStorage = new ConcurrentHashMap<>();
-    private final ExecutorService executor = Executors.newFixedThreadPool(10);
+    private final Engine engine;
+    private final SourceCache sourceCache;
+    private final ScriptValidator validator;
+    private final ContextPool contextPool;
+    private final ScriptScheduler scheduler;
+    private final ScriptProperties properties;
+    private final ScriptIndex scriptIndex;
+    private final ScriptMetrics metrics;
+    private final ScriptWatchdog watchdog;
+    private final ScriptRepository scriptRepository;
+    private final ResultCache resultCache;
+    private final CallbackDispatcher callbackDispatcher;
+    //present with script.cluster.queue=file
+    private final Optional<WorkQueue> workQueue;
+
+    private final ConcurrentHashMap<String, ScriptOutput> outputStorage = new ConcurrentHashMap<>();
+    //Watches of the runs inside a context, blocking ones included; stopScript cancels through them
+    private final ConcurrentHashMap<String, ScriptWatchdog.Watch> runningWatches = new ConcurrentHashMap<>();
 
     private static final String MESSAGE_SCRIPT_NOT_FOUND = "Script with this id not found";
     private static final String MESSAGE_SCRIPT_RUNNING = "The script is currently running and cannot be deleted";
     private static final String MESSAGE_SCRIPT_NOT_RUNNING = "Script with is not running";
+    private static final String MESSAGE_QUEUE_FULL = "Execution queue is full, try again later";
+    private static final String MESSAGE_INVALID_CURSOR = "Invalid cursor";
+    private static final String MESSAGE_RESTARTED = "Server restarted before the script finished";
+    private static final String MESSAGE_STOPPED = "Script stopped";
+    private static final String LANGUAGE = "js";
+    private static final String ARGUMENTS_BINDING = "args";
+    private static final String EMPTY_ARGUMENTS = "{}";
+    private static final String MESSAGE_BATCH_SIZE = "A batch needs between 1 and %d scripts";
+
+    @PostConstruct
+    public void start() {
+        restoreScripts();
+        registerMetrics();
+    }
+
+    //Index scripts kept by a persistent repository; runs cut off by a restart end as ERROR
+    public void restoreScripts() {
+        for (ScriptInfo scriptInfo : scriptRepository.findAll()) {
+            if (!scriptInfo.isFinished()) {
+                scriptInfo.getResult().setError(MESSAGE_RESTARTED);
+                scriptInfo.finish(ERROR);
+                store(scriptInfo);
+                ScriptResult result = new ScriptResult(scriptInfo.getId());
+                result.setStatus(ERROR);
+                result.setError(MESSAGE_RESTARTED);
+                notifyCallback(scriptInfo, result);
+                scriptInfo.getCompletion().complete(result);
+            } else {
+                scriptIndex.update(scriptInfo.getId(), scriptInfo.getStatus(), scriptInfo.getDuration());
+            }
+        }
+    }
+
+    public void registerMetrics() {
+        metrics.gauge("script.executor.active", "Scripts running on the executor", scheduler::getActiveCount);
+        metrics.gauge("script.executor.queued", "Scripts waiting in the queue", scheduler::getQueueSize);
+        metrics.gauge("script.retained", "Scripts held in storage", scriptRepository::count);
+        metrics.gauge("script.output.retained.bytes", "Output bytes held for stored scripts", this::getRetainedOutputBytes);
+    }
 
     public ScriptResult executeScript(String script, boolean isBlocking) {
+        return executeScript(ScriptSubmission.builder().script(script).blocking(isBlocking).build());
+    }
+
+    //With cache, an identical script under the same limits reuses the stored or in-flight run.
+    //With a callbackUrl, the final result is also posted there once the run ends.
+    //With a shared work queue, a non-blocking run without cache goes to whichever node has a free thread
+    public ScriptResult executeScript(ScriptSubmission submission) {
+        return executeScript(submission, false);
+    }
+
+    private ScriptResult executeScript(ScriptSubmission submission, boolean local) {
+        long submittedAt = System.nanoTime();
+        String script = submission.getScript();
+        //a local submit is answered through its completion future, never by blocking
+        boolean isBlocking = submission.isBlocking() && !local;
+        boolean cache = submission.isCache();
+        String callbackUrl = submission.getCallbackUrl();
+        Priority priority = submission.getPriority();
+        if (callbackUrl != null) {
+            callbackDispatcher.validate(callbackUrl);
+        }
+        //a script that does not parse is answered here and never takes queue capacity
+        Source source = validator.parse(script);
         String scriptId = UUID.randomUUID().toString();
+        ScriptLimits resolvedLimits = watchdog.resolve(submission.getLimits());
+        ScriptInfo scriptInfo = newScriptInfo(scriptId, script, resolvedLimits);
+        scriptInfo.setCallbackUrl(callbackUrl);
+        if (!isBlocking && !cache && !local && workQueue.isPresent()) {
+            return share(workQueue.get(), scriptInfo, priority);
+        }
+        if (!cache) {
+            return run(scriptInfo, source, null, isBlocking, priority, null, submittedAt);
+        }
+        ResultCache.Entry entry = resultCache.reserve(ResultCache.key(script, resolvedLimits), scriptId);
+        if (!entry.scriptId().equals(scriptId)) {
+            if (callbackUrl != null) {
+                entry.result().thenAccept(shared -> {
+                    ScriptResult result = MapperScript.copyScriptResult(shared);
+                    result.setCached(true);
+                    callbackDispatcher.dispatch(callbackUrl, result);
+                });
+            }
+            return cachedResult(entry, isBlocking);
+        }
+        return run(scriptInfo, source, null, isBlocking, priority, entry, submittedAt);
+    }
+
+    //Non-blocking submit whose future completes with the final result, for callers that must not hold a thread meanwhile.
+    //Always runs on this node, the future is completed by the local run; blocking is ignored
+    public CompletableFuture<ScriptResult> executeScriptAsync(ScriptSubmission submission) {
+        ScriptResult submitted = executeScript(submission, true);
+        if (!submitted.isCached()) {
+            return getCompletion(submitted.getId());
+        }
+        if (ScriptInfo.isFinal(submitted.getStatus())) {
+            return CompletableFuture.completedFuture(submitted);
+        }
+        return getCompletion(submitted.getId()).thenApply(shared -> {
+            ScriptResult result = MapperScript.copyScriptResult(shared);
+            result.setCached(true);
+            return result;
+        });
+    }
+
+    //Final result of the script; each caller gets its own future, cancelling it does not affect the run
+    public CompletableFuture<ScriptResult> getCompletion(String id) {
+        ScriptInfo scriptInfo = scriptRepository.findById(id);
+        if (scriptInfo == null) {
+            throw scriptNotFound(id);
+        }
+        if (!scriptInfo.getCompletion().isDone() && scriptInfo.isFinished()) {
+            //restored from the repository, the run that would complete it is gone
+            ScriptResult result = new ScriptResult(id);
+            result.setStatus(scriptInfo.getStatus());
+            result.setOutput(scriptInfo.getResult().getOutput());
+            result.setError(scriptInfo.getResult().getError());
+            return CompletableFuture.completedFuture(result);
+        }
+        return scriptInfo.getCompletion().copy();
+    }
+
+    //Run a registered template; its Source is shared by every run, arguments are bound to args
+    public ScriptResult executeTemplate(TemplateRegistry.Template template, String arguments, boolean isBlocking, Priority priority, ScriptLimits limits) {
+        long submittedAt = System.nanoTime();
+        ScriptInfo scriptInfo = newScriptInfo(UUID.randomUUID().toString(), template.script(), watchdog.resolve(limits));
+        scriptInfo.setTemplate(template.name());
+        scriptInfo.setArguments(arguments == null ? EMPTY_ARGUMENTS : arguments);
+        if (!isBlocking && workQueue.isPresent()) {
+            return share(workQueue.get(), scriptInfo, priority);
+        }
+        return run(scriptInfo, template.source(), scriptInfo.getArguments(), isBlocking, priority, null, submittedAt);
+    }
+
+    //The script waits in the shared queue and is stored by the node that claims it
+    private ScriptResult share(WorkQueue queue, ScriptInfo scriptInfo, Priority priority) {
+        QueuedScript script = QueuedScript.builder()
+                .id(scriptInfo.getId())
+                .script(scriptInfo.getScript())
+                .priority(priority)
+                .limits(scriptInfo.getLimits())
+                .template(scriptInfo.getTemplate())
+                .arguments(scriptInfo.getArguments())
+                .callbackUrl(scriptInfo.getCallbackUrl())
+                .submittedAt(scriptInfo.getStartTime())
+                .build();
+        if (!queue.offer(script)) {
+            metrics.recordRejected();
+            throw new TooManyRequestsException(ScriptResponse.builder()
+                    .message(MESSAGE_QUEUE_FULL)
+                    .id(scriptInfo.getId())
+                    .statusOperation(StatusOperation.ERROR)
+                    .build());
+        }
+        //counted as QUEUE by the node that claims it, like any script it queues itself
+        return new ScriptResult(scriptInfo.getId());
+    }
+
+    //Run a script claimed from the shared queue under its own id; its final state is published back to the queue.
+    //Throws TooManyRequestsException when the local executor is full, the caller puts the script back
+    public void runClaimed(QueuedScript script) {
+        long submittedAt = System.nanoTime();
+        ScriptInfo scriptInfo = newScriptInfo(script.getId(), script.getScript(), script.getLimits());
+        scriptInfo.setStartTime(script.getSubmittedAt());
+        scriptInfo.setTemplate(script.getTemplate());
+        scriptInfo.setArguments(script.getArguments());
+        scriptInfo.setCallbackUrl(script.getCallbackUrl());
+        WorkQueue queue = workQueue.orElseThrow();
+        scriptInfo.getCompletion().thenRun(() -> queue.complete(MapperScript.mapToScriptRecord(scriptInfo)));
+        run(scriptInfo, sourceCache.getSource(script.getScript()), script.getArguments(), false, script.getPriority(), null, submittedAt);
+    }
+
+    private ScriptInfo newScriptInfo(String scriptId, String script, ScriptLimits limits) {
         ScriptInfo scriptInfo = new ScriptInfo(scriptId, script);
-        scriptStorage.put(scriptId, scriptInfo);
+        scriptInfo.setLimits(limits);
+        scriptInfo.addListener((info, from, to) -> metrics.recordStatus(to));
+        return scriptInfo;
+    }
+
+    //The entry is completed by the shared run's completion however it ends, deleted or stopped included,
+    //the wait is still bounded so a lost run never holds the caller
+    private ScriptResult cachedResult(ResultCache.Entry entry, boolean isBlocking) {
+        ScriptResult result = null;
+        try {
+            if (isBlocking) {
+                result = MapperScript.copyScriptResult(entry.result().get(properties.getResultCache().getWaitMs(), TimeUnit.MILLISECONDS));
+            } else if (entry.result().isDone()) {
+                result = MapperScript.copyScriptResult(entry.result().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException | TimeoutException e) {
+            //status below
+        }
+        if (result == null) {
+            //still running: answer like a non-blocking submit of the shared run
+            result = new ScriptResult(entry.scriptId());
+            ScriptInfo scriptInfo = scriptRepository.findById(entry.scriptId());
+            if (scriptInfo != null) {
+                result.setStatus(scriptInfo.getStatus());
+            }
+        }
+        result.setCached(true);
+        return result;
+    }
+
+    private ScriptResult run(ScriptInfo scriptInfo, Source source, String arguments, boolean isBlocking, Priority priority,
+                             ResultCache.Entry cacheEntry, long submittedAt) {
+        String scriptId = scriptInfo.getId();
+        ScriptOutput scriptOutput = new ScriptOutput(properties.getOutput());
+        outputStorage.put(scriptId, scriptOutput);
+        store(scriptInfo);
+        metrics.recordStatus(QUEUE);
+        //however the run ends, deleted while queued included
+        scriptInfo.getCompletion().thenAccept(result -> {
+            resultCache.complete(cacheEntry, result);
+            notifyCallback(scriptInfo, result);
+        });
 
-        Callable<ScriptResult> task = createScriptTask(script, scriptInfo);
+        Callable<ScriptResult> task = createScriptTask(source, arguments, scriptInfo, scriptOutput, isBlocking, submittedAt);
 
         if (isBlocking) {
             try {
-                return task.call();
+                return scheduler.runBlocking(task);
             } catch (Exception e) {
-                ScriptResult result = new ScriptResult();
+                ScriptResult result = new ScriptResult(scriptId);
                 result.setError(e.getMessage());
                 result.setStatus(ERROR);
+                scriptInfo.setResult(MapperScript.mapToScriptResultDTO(result));
+                scriptInfo.finish(ERROR);
+                store(scriptInfo);
+                scriptOutput.complete();
+                scriptInfo.getCompletion().complete(result);
                 return result;
             }
         } else {
-            Future<?> future = executor.submit(task);
+            Future<?> future;
+            try {
+                future = scheduler.submit(scriptId, priority, task);
+            } catch (RejectedExecutionException e) {
+                metrics.recordRejected();
+                scriptRepository.remove(scriptId);
+                scriptIndex.remove(scriptId);
+                outputStorage.remove(scriptId).close();
+                ScriptResult result = new ScriptResult(scriptId);
+                result.setStatus(ERROR);
+                result.setError(MESSAGE_QUEUE_FULL);
+                resultCache.complete(cacheEntry, result);
+                throw new TooManyRequestsException(ScriptResponse.builder()
+                        .message(MESSAGE_QUEUE_FULL)
+                        .id(scriptId)
+                        .statusOperation(StatusOperation.ERROR)
+                        .build());
+            }
             scriptInfo.setFuture(future);
-            return new ScriptResult(scriptId);
+            ScriptResult result = new ScriptResult(scriptId);
+            result.setQueuePosition(scheduler.getQueuePosition(future));
+            return result;
         }
     }
 
+    //Queue many scripts under one lock. Items share one random batch id and run in pooled contexts;
+    //blocking waits for all of them, which run in parallel on the executor
+    public BatchResult executeBatch(List<String> scripts, boolean isBlocking, Priority priority, ScriptLimits limits, BatchMode mode) {
+        //a batch larger than the queue could never be queued whole
+        int maxSize = Math.min(properties.getBatch().getMaxSize(), properties.getExecutor().getQueueCapacity());
+        if (scripts == null || scripts.isEmpty() || scripts.size() > maxSize) {
+            throw new ApplicationException(HttpStatus.BAD_REQUEST, ScriptResponse.builder()
+                    .message(String.format(MESSAGE_BATCH_SIZE, maxSize))
+                    .statusOperation(StatusOperation.ERROR)
+                    .build());
+        }
+        //all-or-nothing rejects the batch on the first syntax error, best-effort returns that item as ERROR
+        Source[] sources = new Source[scripts.size()];
+        ScriptValidation[] invalid = new ScriptValidation[scripts.size()];
+        for (int i = 0; i < scripts.size(); i++) {
+            try {
+                sources[i] = validator.parse(scripts.get(i));
+            } catch (ScriptSyntaxException e) {
+                e.getValidation().setIndex(i);
+                if (mode == BatchMode.ALL_OR_NOTHING) {
+                    throw e;
+                }
+                invalid[i] = e.getValidation();
+            }
+        }
+        long submittedAt = System.nanoTime();
+        String batchId = UUID.randomUUID().toString();
+        ScriptLimits resolvedLimits = watchdog.resolve(limits);
 
-    private Callable<ScriptResult> createScriptTask(String script, ScriptInfo scriptInfo) {
-        return () -> {
-            scriptInfo.getResult().setStatus(PROCESSING);
+        List<ScriptInfo> scriptInfos = new ArrayList<>(scripts.size());
+        List<ScriptTask> tasks = new ArrayList<>(scripts.size());
+        for (int i = 0; i < scripts.size(); i++) {
+            if (invalid[i] != null) {
+                continue;
+            }
+            String scriptId = batchId + "-" + i;
+            ScriptInfo scriptInfo = newScriptInfo(scriptId, scripts.get(i), resolvedLimits);
+            ScriptOutput scriptOutput = new ScriptOutput(properties.getOutput());
+            outputStorage.put(scriptId, scriptOutput);
+            ScriptTask task = new ScriptTask(scriptId, priority,
+                    createScriptTask(sources[i], null, scriptInfo, scriptOutput, true, submittedAt));
+            scriptInfo.setFuture(task);
+            store(scriptInfo);
+            metrics.recordStatus(QUEUE);
+            scriptInfos.add(scriptInfo);
+            tasks.add(task);
+        }
 
-            ScriptResult result = new ScriptResult();
-            ByteArrayOutputStream outContent = new ByteArrayOutputStream();
-            ByteArrayOutputStream errContent = new ByteArrayOutputStream();
+        int accepted = 0;
+        if (!tasks.isEmpty()) {
+            try {
+                accepted = scheduler.submitAll(tasks, mode == BatchMode.ALL_OR_NOTHING);
+            } catch (RejectedExecutionException e) {
+                accepted = 0;
+            }
+            for (int i = accepted; i < tasks.size(); i++) {
+                metrics.recordRejected();
+                scriptRepository.remove(scriptInfos.get(i).getId());
+                removeOutputAndIndex(scriptInfos.get(i).getId());
+            }
+            if (accepted == 0) {
+                throw new TooManyRequestsException(ScriptResponse.builder()
+                        .message(MESSAGE_QUEUE_FULL)
+                        .id(batchId)
+                        .statusOperation(StatusOperation.ERROR)
+                        .build());
+            }
+        }
 
-            outputStorage.put(scriptInfo.getId(), outContent);
+        List<ScriptResult> results = new ArrayList<>(scripts.size());
+        int taskIndex = 0;
+        for (int i = 0; i < scripts.size(); i++) {
+            ScriptResult result;
+            if (invalid[i] != null) {
+                result = new ScriptResult(batchId + "-" + i);
+                result.setStatus(ERROR);
+                result.setError(invalid[i].getMessage());
+                result.setValidation(invalid[i]);
+            } else if (taskIndex >= accepted) {
+                result = new ScriptResult(batchId + "-" + i);
+                result.setStatus(ERROR);
+                result.setError(MESSAGE_QUEUE_FULL);
+            } else if (isBlocking) {
+                result = awaitResult(tasks.get(taskIndex), scriptInfos.get(taskIndex));
+            } else {
+                result = new ScriptResult(scriptInfos.get(taskIndex).getId());
+            }
+            if (invalid[i] == null) {
+                taskIndex++;
+            }
+            results.add(result);
+        }
+        return new BatchResult(batchId, accepted, scripts.size() - accepted, results);
+    }
 
-            try (PrintStream stdout = new PrintStream(outContent);
-                 PrintStream stderr = new PrintStream(errContent);
-                 Context context = Context.newBuilder("js")
-                         .out(stdout)
-                         .err(stderr)
-                         .option("engine.WarnInterpreterOnly", "false")
-                         .build()) {
+    //A stopped task has no result of its own, its stored state is returned instead
+    private ScriptResult awaitResult(ScriptTask task, ScriptInfo scriptInfo) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            //state below
+        }
+        ScriptResult result = new ScriptResult(scriptInfo.getId());
+        result.setStatus(scriptInfo.getStatus());
+        result.setOutput(scriptInfo.getResult().getOutput());
+        result.setError(scriptInfo.getResult().getError());
+        return result;
+    }
 
 
-                context.eval("js", script);
+    private Callable<ScriptResult> createScriptTask(Source source, String arguments, ScriptInfo scriptInfo, ScriptOutput scriptOutput, boolean pooled,
+                                                    long submittedAt) {
+        return () -> {
+            long startedAt = System.nanoTime();
+            metrics.recordQueueWait(startedAt - submittedAt);
+            PhaseTimer phases = new PhaseTimer(submittedAt, startedAt);
+            ScriptLimits limits = scriptInfo.getLimits();
+            ScriptWatchdog.Watch watch = watchdog.watch(limits);
+            //registered before PROCESSING is visible, so a stop never finds a running script without its watch
+            runningWatches.put(scriptInfo.getId(), watch);
+            if (!scriptInfo.transition(QUEUE, PROCESSING)) {
+                //deleted while it waited, the delete already ended it
+                runningWatches.remove(scriptInfo.getId(), watch);
+                watch.stop();
+                return currentResult(scriptInfo);
+            }
+            store(scriptInfo);
 
-                result.setOutput(outContent.toString());
-                result.setError(errContent.toString());
-                result.setStatus(COMPLETED);
+            ScriptResult result = new ScriptResult();
+            OutputBuffer stdout = scriptOutput.getOut();
+            OutputBuffer stderr = scriptOutput.getErr();
+
+            try {
+                //Statement limits are fixed when a context is built, so limited runs get their own context
+                if (pooled && limits.getStatementLimit() == null) {
+                    evalInPooledContext(source, arguments, stdout, stderr, watch, phases);
+                } else {
+                    evalInNewContext(source, arguments, stdout, stderr, watch, limits, phases);
+                }
+
+                //only a bounded tail is kept with the result, the whole output stays in the buffers
+                OutputChunk outTail = stdout.tail(properties.getOutput().getResultTailBytes());
+                OutputChunk errTail = stderr.tail(properties.getOutput().getResultTailBytes());
+                result.setOutput(text(outTail));
+                result.setError(text(errTail));
+                result.setOutputTruncated(outTail.isTruncated());
+                result.setErrorTruncated(errTail.isTruncated());
+                scriptOutput.setResultBytes(outTail.getData().length + errTail.getData().length);
+                //a stop that raced with the end of eval still counts, the caller was told it stopped
+                result.setStatus(watch.isCancelled() ? STOPPED : COMPLETED);
 
             } catch (PolyglotException e) {
-                if(e.isInterrupted()) {
+                if (watch.getExceeded() != null) {
+                    result.setError(watch.describe());
+                    result.setStatus(LIMIT_EXCEEDED);
+                } else if (watch.isCancelled() || e.isInterrupted()) {
+                    result.setError(MESSAGE_STOPPED);
+                    result.setStatus(STOPPED);
+                } else {
                     result.setError(e.getMessage());
+                    result.setStatus(ERROR);
+                }
+            } catch (Exception e) {
+                if (watch.getExceeded() != null) {
+                    result.setError(watch.describe());
+                    result.setStatus(LIMIT_EXCEEDED);
+                } else if (watch.isCancelled()) {
+                    result.setError(MESSAGE_STOPPED);
                     result.setStatus(STOPPED);
-                }else {
+                } else {
                     result.setError(e.getMessage());
                     result.setStatus(ERROR);
                 }
+            } finally {
+                runningWatches.remove(scriptInfo.getId(), watch);
+                scriptInfo.setUsage(watch.stop());
+                scriptInfo.setExceededLimit(watch.getExceeded());
+                result.setId(scriptInfo.getId());
+                scriptInfo.setResult(MapperScript.mapToScriptResultDTO(result));
+                scriptInfo.setDuration(System.currentTimeMillis() - scriptInfo.getStartTime());
+                scriptInfo.setTrace(phases.finish());
+                //only this task moves the script out of PROCESSING, unless a stop ended it first
+                boolean ended = scriptInfo.transition(PROCESSING, result.getStatus());
+                store(scriptInfo);
+                metrics.recordTrace(scriptInfo.getTrace());
+                metrics.recordExecution(System.nanoTime() - startedAt);
+                scriptOutput.complete();
+                scriptInfo.getCompletion().complete(ended ? result : currentResult(scriptInfo));
             }
-            result.setId(scriptInfo.getId());
-            scriptInfo.setResult(MapperScript.mapToScriptResultDTO(result));
-            scriptInfo.setDuration(System.currentTimeMillis() - scriptInfo.getStartTime());
 
             return result;
         };
     }
 
-    public List<ScriptInfoShort> getAllScripts(SortedByTime sortTime, SortedByStatus sortStatus) {
+    private void evalInPooledContext(Source source, String arguments, OutputStream stdout, OutputStream stderr, ScriptWatchdog.Watch watch,
+                                     PhaseTimer phases) throws InterruptedException, TimeoutException {
+        PooledContext pooledContext = contextPool.borrow();
+        try {
+            pooledContext.redirect(stdout, stderr);
+            phases.contextReady(true);
+            watch.bind(pooledContext.getContext());
+            eval(pooledContext.getContext(), source, arguments);
+        } catch (PolyglotException e) {
+            if (e.isCancelled() || e.isExit() || e.isInternalError()) {
+                pooledContext.markBroken();
+            }
+            throw e;
+        } finally {
+            phases.evalDone();
+            watch.unbind();
+            //closed by the watchdog, possibly after eval returned; a stopped script may have left global state half done
+            if (watch.getExceeded() != null || watch.isCancelled()) {
+                pooledContext.markBroken();
+            }
+            contextPool.release(pooledContext);
+        }
+    }
+
+    private void evalInNewContext(Source source, String arguments, OutputStream stdout, OutputStream stderr, ScriptWatchdog.Watch watch, ScriptLimits limits,
+                                  PhaseTimer phases) {
+        Context.Builder builder = Context.newBuilder("js")
+                .engine(engine)
+                .out(stdout)
+                .err(stderr);
+        if (limits.getStatementLimit() != null) {
+            builder.resourceLimits(ResourceLimits.newBuilder()
+                    .statementLimit(limits.getStatementLimit(), null)
+                    .onLimit(event -> watch.limitReached(ResourceLimit.STATEMENTS))
+                    .build());
+        }
+        Context context = builder.build();
+        phases.contextReady(false);
+        try {
+            watch.bind(context);
+            eval(context, source, arguments);
+        } finally {
+            phases.evalDone();
+            watch.unbind();
+            //forced, a plain close fails on a context cancelled by a limit
+            context.close(true);
+        }
+    }
+
+    private void notifyCallback(ScriptInfo scriptInfo, ScriptResult result) {
+        if (scriptInfo.getCallbackUrl() != null) {
+            callbackDispatcher.dispatch(scriptInfo.getCallbackUrl(), result);
+        }
+    }
+
+    //Arguments go through the context's own JSON.parse, so the script gets plain JS values
+    private static void eval(Context context, Source source, String arguments) {
+        if (arguments == null) {
+            context.eval(source);
+            return;
+        }
+        Value bindings = context.getBindings(LANGUAGE);
+        bindings.putMember(ARGUMENTS_BINDING, bindings.getMember("JSON").invokeMember("parse", arguments));
+        try {
+            context.eval(source);
+        } finally {
+            try {
+                bindings.removeMember(ARGUMENTS_BINDING);
+            } catch (PolyglotException | IllegalStateException e) {
+                //context cancelled or closed, it is not reused
+            }
+        }
+    }
+
+    public ContextPoolStats getContextPoolStats() {
+        return contextPool.getStats();
+    }
+
+    //Parse only, nothing is stored or run
+    public ScriptValidation validateScript(String script) {
+        return validator.validate(script);
+    }
+
+    public Map<ExecutionPhase, PhaseStats> getPhaseStats() {
+        return metrics.getPhaseStats();
+    }
+
+    public ScriptPage getAllScripts(SortedByTime sortTime, SortedByStatus sortStatus, String cursor, Integer limit) {
+        int pageSize;
+        if (limit != null) {
+            pageSize = Math.max(1, Math.min(limit, properties.getListing().getMaxLimit()));
+        } else if (cursor != null) {
+            pageSize = properties.getListing().getDefaultLimit();
+        } else {
+            //no limit and no cursor keeps the old unpaginated list
+            pageSize = Integer.MAX_VALUE;
+        }
+        ScriptIndex.Page page;
+        try {
+            page = scriptIndex.page(sortTime, sortStatus, cursor, pageSize);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ApplicationException(HttpStatus.BAD_REQUEST, ScriptResponse.builder()
+                    .message(MESSAGE_INVALID_CURSOR)
+                    .id(cursor)
+                    .statusOperation(StatusOperation.ERROR)
+                    .build());
+        }
 
-        return scriptStorage.values().stream()
-                .map(MapperScript::mapToShortInfo)
-                .peek(scriptInfoShort ->  {
-                    ByteArrayOutputStream byteArrayOutputStream = outputStorage.get(scriptInfoShort.getId());
-                    scriptInfoShort.getResult().setOutput(byteArrayOutputStream.toString());
-                })
-                .filter(scriptInfoShort -> filterByStatus(scriptInfoShort, sortStatus))
-                .sorted(getComparator(sortTime))
+        List<ScriptInfoShort> items = page.getIds().stream()
+                .map(scriptRepository::findById)
+                .filter(Objects::nonNull)
+                .map(this::toShortInfo)
                 .toList();
+        return new ScriptPage(items, page.getNextCursor());
     }
 
-    private boolean filterByStatus(ScriptInfoShort scriptInfoShort, SortedByStatus sortStatus) {
-        if (sortStatus == SortedByStatus.ALL) {
-            return true;
+    private ScriptInfoShort toShortInfo(ScriptInfo scriptInfo) {
+        ScriptInfoShort scriptInfoShort = MapperScript.mapToShortInfo(scriptInfo);
+        ScriptOutput scriptOutput = outputStorage.get(scriptInfoShort.getId());
+        if (scriptOutput != null) {
+            scriptInfoShort.setOutputSize(scriptOutput.getOut().size());
+            scriptInfoShort.getResult().setOutputTruncated(scriptOutput.getOut().isTruncated());
         }
-        return scriptInfoShort.getResult() != null && scriptInfoShort.getResult().getStatus().name().equals(sortStatus.name());
+        return scriptInfoShort;
     }
 
-    private Comparator<ScriptInfoShort> getComparator(SortedByTime sortTime) {
-        return switch (sortTime) {
-            case UPPER -> Comparator.comparing(ScriptInfoShort::getDuration);
-            case LOWER -> Comparator.comparing(ScriptInfoShort::getDuration).reversed();
-            default -> Comparator.comparing(ScriptInfoShort::getId);
-        };
+    private void store(ScriptInfo scriptInfo) {
+        scriptRepository.save(scriptInfo);
+        scriptIndex.update(scriptInfo.getId(), scriptInfo.getStatus(), scriptInfo.getDuration());
+        //deleted between the transition and this save, take it out again
+        if (scriptInfo.isRemoved()) {
+            scriptRepository.remove(scriptInfo.getId(), scriptInfo);
+            removeOutputAndIndex(scriptInfo.getId());
+        }
+    }
+
+    private static String text(OutputChunk chunk) {
+        return chunk.getData().length == 0 && chunk.isTruncated() ? null : new String(chunk.getData(), StandardCharsets.UTF_8);
+    }
+
+    private static ScriptResult currentResult(ScriptInfo scriptInfo) {
+        ScriptResult result = new ScriptResult(scriptInfo.getId());
+        result.setStatus(scriptInfo.getStatus());
+        result.setError(scriptInfo.getResult().getError());
+        return result;
+    }
+
+    //Scripts stored on this node first, then the shared queue's view of scripts queued or run on any node
+    private ScriptInfo findScript(String id) {
+        ScriptInfo scriptInfo = scriptRepository.findById(id);
+        if (scriptInfo == null && workQueue.isPresent()) {
+            ScriptRecord record = workQueue.get().find(id);
+            return record == null ? null : MapperScript.mapToScriptInfo(record);
+        }
+        return scriptInfo;
     }
 
     public ScriptInfoResponse getInfoScriptById(String id) {
-        ScriptInfo scriptInfo = scriptStorage.get(id);
+        ScriptInfo scriptInfo = findScript(id);
         if(scriptInfo == null) {
             throw new NotFoundException(ScriptResponse.builder()
                     .message(MESSAGE_SCRIPT_NOT_FOUND)
@@ -134,14 +684,117 @@ public class ScriptExecutionService {
                     .build());
         }
 
-        ByteArrayOutputStream byteArrayOutputStream = outputStorage.get(scriptInfo.getId());
-        scriptInfo.getResult().setOutput(byteArrayOutputStream.toString());
+        scriptInfo.setLastAccessTime(System.currentTimeMillis());
+        ScriptInfoResponse response = MapperScript.mapToResponseScript(scriptInfo);
+        ScriptOutput scriptOutput = outputStorage.get(scriptInfo.getId());
+        if (scriptOutput != null) {
+            //one read, so the output and the offset to continue from describe the same bytes
+            OutputChunk chunk = scriptOutput.getOut().tail(properties.getOutput().getResultTailBytes());
+            response.setOutputOffset(chunk.getNextOffset());
+            if (response.getResult() != null) {
+                response.getResult().setOutput(text(chunk));
+                response.getResult().setOutputTruncated(chunk.isTruncated());
+            }
+        }
+        if (scriptInfo.getStatus() == QUEUE) {
+            response.setQueuePosition(scheduler.getQueuePosition(scriptInfo.getFuture()));
+        }
+        return response;
+    }
+
+    public ScriptOutput getScriptOutput(String id) {
+        ScriptOutput scriptOutput = outputStorage.get(id);
+        ScriptInfo scriptInfo = scriptRepository.findById(id);
+        if (scriptOutput == null && scriptInfo != null && scriptInfo.isFinished()) {
+            scriptOutput = outputStorage.computeIfAbsent(id, key -> restoreOutput(scriptInfo));
+        }
+        if (scriptOutput == null && scriptInfo == null) {
+            scriptOutput = sharedOutput(id);
+        }
+        if (scriptOutput == null) {
+            throw scriptNotFound(id);
+        }
+        if (scriptInfo != null) {
+            scriptInfo.setLastAccessTime(System.currentTimeMillis());
+        }
+        return scriptOutput;
+    }
+
+    //Output of a script on another node: its published result once finished, empty until then. Not kept here
+    private ScriptOutput sharedOutput(String id) {
+        ScriptInfo scriptInfo = findScript(id);
+        if (scriptInfo == null) {
+            return null;
+        }
+        return scriptInfo.isFinished() ? restoreOutput(scriptInfo) : new ScriptOutput(properties.getOutput());
+    }
+
+    //Output of a run restored from the repository, rebuilt from the tail kept with its result
+    private ScriptOutput restoreOutput(ScriptInfo scriptInfo) {
+        ScriptOutput scriptOutput = new ScriptOutput(properties.getOutput());
+        ScriptResultDTO result = scriptInfo.getResult();
+        long resultBytes = 0;
+        if (result.getOutput() != null) {
+            byte[] output = result.getOutput().getBytes(StandardCharsets.UTF_8);
+            scriptOutput.getOut().write(output, 0, output.length);
+            resultBytes += output.length;
+        }
+        if (result.getError() != null) {
+            byte[] error = result.getError().getBytes(StandardCharsets.UTF_8);
+            scriptOutput.getErr().write(error, 0, error.length);
+            resultBytes += error.length;
+        }
+        scriptOutput.setResultBytes(resultBytes);
+        if (result.isOutputTruncated()) {
+            scriptOutput.getOut().markPartial();
+        }
+        if (result.isErrorTruncated()) {
+            scriptOutput.getErr().markPartial();
+        }
+        scriptOutput.complete();
+        return scriptOutput;
+    }
+
+    public ScriptOutputResponse readOutput(String id, OutputChannel channel, long offset, int limit) {
+        ScriptOutput scriptOutput = getScriptOutput(id);
+        OutputBuffer buffer = channel == OutputChannel.STDERR ? scriptOutput.getErr() : scriptOutput.getOut();
+        boolean completed = scriptOutput.isCompleted();
+        OutputChunk chunk = buffer.read(Math.max(0, offset), Math.max(0, Math.min(limit, properties.getOutput().getMaxReadBytes())));
 
-        return MapperScript.mapToResponseScript(scriptInfo);
+        return ScriptOutputResponse.builder()
+                .id(id)
+                .channel(channel)
+                .offset(chunk.getOffset())
+                .nextOffset(chunk.getNextOffset())
+                .size(buffer.size())
+                .truncated(chunk.isTruncated())
+                .completed(completed && chunk.getNextOffset() >= buffer.size())
+                .data(new String(chunk.getData(), StandardCharsets.UTF_8))
+                .build();
+    }
+
+    //Final state of the script without its output
+    public ScriptResult getScriptStatus(String id) {
+        ScriptInfo scriptInfo = findScript(id);
+        if (scriptInfo == null) {
+            throw scriptNotFound(id);
+        }
+        ScriptResult result = new ScriptResult(id);
+        result.setStatus(scriptInfo.getStatus());
+        result.setError(scriptInfo.getResult().getError());
+        return result;
+    }
+
+    private NotFoundException scriptNotFound(String id) {
+        return new NotFoundException(ScriptResponse.builder()
+                .message(MESSAGE_SCRIPT_NOT_FOUND)
+                .id(id)
+                .statusOperation(StatusOperation.ERROR)
+                .build());
     }
 
     public void stopScript(String scriptId) {
-        ScriptInfo scriptInfo = scriptStorage.get(scriptId);
+        ScriptInfo scriptInfo = scriptRepository.findById(scriptId);
         if (scriptInfo == null) {
             throw new NotFoundException(ScriptResponse.builder()
                     .message(MESSAGE_SCRIPT_NOT_FOUND)
@@ -151,8 +804,11 @@ public class ScriptExecutionService {
         }
 
         Future<?> future = scriptInfo.getFuture();
-        if(scriptInfo.getResult().getStatus() == PROCESSING) {
-            if (future != null) {
+        if(scriptInfo.getStatus() == PROCESSING) {
+            ScriptWatchdog.Watch watch = runningWatches.get(scriptId);
+            if (watch != null) {
+                cancel(scriptInfo, watch);
+            } else if (future != null) {
                 future.cancel(true);
             } else {
                 throw new ApplicationException(HttpStatus.BAD_REQUEST, ScriptResponse.builder()
@@ -167,28 +823,118 @@ public class ScriptExecutionService {
         }
     }
 
+    //Interrupts the context and waits for the task to store STOPPED and free its thread.
+    //A run stopped before it has a context ends as soon as it gets one, hence the borrow timeout in the wait
+    private void cancel(ScriptInfo scriptInfo, ScriptWatchdog.Watch watch) {
+        Duration grace = Duration.ofMillis(Math.max(1, properties.getLimits().getStopGraceMs()));
+        if (!watch.cancel(grace)) {
+            throw new ApplicationException(HttpStatus.CONFLICT, ScriptResponse.builder()
+                    .message(MESSAGE_SCRIPT_NOT_RUNNING)
+                    .id(scriptInfo.getId())
+                    .statusOperation(StatusOperation.ERROR)
+                    .build());
+        }
+        try {
+            scriptInfo.getCompletion().get(grace.toMillis() + properties.getContextPool().getBorrowTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            //the task is still storing its result, it ends as STOPPED regardless
+        }
+    }
+
     public void deleteScript(String id) {
-        ScriptInfo scriptInfo = scriptStorage.get(id);
+        ScriptInfo scriptInfo = scriptRepository.findById(id);
         if (scriptInfo == null) {
-            throw new NotFoundException(ScriptResponse.builder()
-                    .message(MESSAGE_SCRIPT_NOT_FOUND)
+            deleteShared(id);
+            return;
+        }
+        //a queued script is ended first, so its task never starts and cannot store it again
+        cancelQueued(scriptInfo);
+        if (scriptInfo.markRemoved()) {
+            scriptRepository.remove(id);
+            removeOutputAndIndex(id);
+            workQueue.ifPresent(queue -> queue.remove(id));
+        } else if (scriptInfo.isRemoved()) {
+            throw scriptNotFound(id);
+        } else {
+            throw new ScriptRunException(ScriptResponse.builder()
+                    .message(MESSAGE_SCRIPT_RUNNING)
                     .id(id)
                     .statusOperation(StatusOperation.ERROR)
                     .build());
         }
-        if(scriptInfo.getResult() != null) {
-            Status status = scriptInfo.getResult().getStatus();
+    }
 
-            if (status != PROCESSING) {
-                scriptStorage.remove(id);
-                outputStorage.remove(id);
-            } else {
-                throw new ScriptRunException(ScriptResponse.builder()
-                        .message(MESSAGE_SCRIPT_RUNNING)
-                        .id(id)
-                        .statusOperation(StatusOperation.ERROR)
-                        .build());
-            }
+    //A script only in the shared queue, run or waiting on another node: its published result can be deleted from here
+    private void deleteShared(String id) {
+        ScriptRecord record = workQueue.map(queue -> queue.find(id)).orElse(null);
+        if (record == null) {
+            throw scriptNotFound(id);
+        }
+        if (!ScriptInfo.isFinal(record.getResult().getStatus())) {
+            throw new ScriptRunException(ScriptResponse.builder()
+                    .message(MESSAGE_SCRIPT_RUNNING)
+                    .id(id)
+                    .statusOperation(StatusOperation.ERROR)
+                    .build());
+        }
+        workQueue.get().remove(id);
+    }
+
+    //Ends a script that has not started yet as STOPPED; false once its task took it
+    private boolean cancelQueued(ScriptInfo scriptInfo) {
+        if (!scriptInfo.transition(QUEUE, STOPPED)) {
+            return false;
+        }
+        scriptInfo.getResult().setError(MESSAGE_STOPPED);
+        if (scriptInfo.getFuture() != null) {
+            scriptInfo.getFuture().cancel(false);
+            scheduler.remove(scriptInfo.getFuture());
+        }
+        ScriptOutput scriptOutput = outputStorage.get(scriptInfo.getId());
+        if (scriptOutput != null) {
+            scriptOutput.complete();
+        }
+        scriptInfo.getCompletion().complete(currentResult(scriptInfo));
+        return true;
+    }
+
+    //Scripts in a final status, iterated without locking the storage
+    public List<ScriptInfo> getFinishedScripts() {
+        return scriptRepository.findAll().stream()
+                .filter(ScriptInfo::isFinished)
+                .toList();
+    }
+
+    public int getStoredCount() {
+        return scriptRepository.count();
+    }
+
+    public long getRetainedOutputBytes() {
+        return outputStorage.values().stream().mapToLong(ScriptOutput::retainedBytes).sum();
+    }
+
+    public long getRetainedOutputBytes(String id) {
+        ScriptOutput scriptOutput = outputStorage.get(id);
+        return scriptOutput == null ? 0 : scriptOutput.retainedBytes();
+    }
+
+    //Remove a finished script unless it was replaced or deleted in the meantime
+    public boolean evictScript(ScriptInfo scriptInfo) {
+        if (!scriptInfo.markRemoved() || !scriptRepository.remove(scriptInfo.getId(), scriptInfo)) {
+            return false;
+        }
+        removeOutputAndIndex(scriptInfo.getId());
+        workQueue.ifPresent(queue -> queue.remove(scriptInfo.getId()));
+        return true;
+    }
+
+    private void removeOutputAndIndex(String id) {
+        scriptIndex.remove(id);
+        ScriptOutput scriptOutput = outputStorage.remove(id);
+        if (scriptOutput != null) {
+            scriptOutput.close();
         }
     }
 
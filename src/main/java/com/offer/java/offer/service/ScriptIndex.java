@@ -0,0 +1,137 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.dto.SortedByStatus;
+import com.offer.java.offer.dto.SortedByTime;
+import com.offer.java.offer.dto.Status;
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+//Secondary indexes over stored scripts, so a listing page costs O(page size) instead of a full scan and sort
+@Component
+public class ScriptIndex {
+
+    private final ConcurrentHashMap<String, DurationKey> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Status> statuses = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListSet<String> allById = new ConcurrentSkipListSet<>();
+    private final ConcurrentSkipListSet<DurationKey> allByDuration = new ConcurrentSkipListSet<>();
+    private final Map<Status, ConcurrentSkipListSet<String>> byStatusAndId = new EnumMap<>(Status.class);
+    private final Map<Status, ConcurrentSkipListSet<DurationKey>> byStatusAndDuration = new EnumMap<>(Status.class);
+
+    public ScriptIndex() {
+        for (Status status : Status.values()) {
+            byStatusAndId.put(status, new ConcurrentSkipListSet<>());
+            byStatusAndDuration.put(status, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    //Add the script or move it to its new status/duration
+    public void update(String id, Status status, long duration) {
+        entries.compute(id, (key, previous) -> {
+            Status previousStatus = statuses.get(id);
+            if (previous != null) {
+                allByDuration.remove(previous);
+                byStatusAndId.get(previousStatus).remove(id);
+                byStatusAndDuration.get(previousStatus).remove(previous);
+            }
+            DurationKey current = new DurationKey(duration, id);
+            statuses.put(id, status);
+            allById.add(id);
+            allByDuration.add(current);
+            byStatusAndId.get(status).add(id);
+            byStatusAndDuration.get(status).add(current);
+            return current;
+        });
+    }
+
+    public void remove(String id) {
+        entries.computeIfPresent(id, (key, previous) -> {
+            Status previousStatus = statuses.remove(id);
+            allById.remove(id);
+            allByDuration.remove(previous);
+            byStatusAndId.get(previousStatus).remove(id);
+            byStatusAndDuration.get(previousStatus).remove(previous);
+            return null;
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    //Up to limit ids after the cursor, plus the cursor of the next page (null when there is none)
+    public Page page(SortedByTime sortTime, SortedByStatus sortStatus, String cursor, int limit) {
+        Status status = sortStatus == SortedByStatus.ALL ? null : Status.valueOf(sortStatus.name());
+        List<String> ids = new ArrayList<>(Math.min(limit, allById.size()));
+        String nextCursor = null;
+
+        if (sortTime == SortedByTime.DEFAULT) {
+            NavigableSet<String> index = status == null ? allById : byStatusAndId.get(status);
+            NavigableSet<String> tail = cursor == null ? index : index.tailSet(decode(cursor), false);
+            Iterator<String> iterator = tail.iterator();
+            while (iterator.hasNext() && ids.size() < limit) {
+                ids.add(iterator.next());
+            }
+            if (iterator.hasNext()) {
+                nextCursor = encode(ids.get(ids.size() - 1));
+            }
+        } else {
+            NavigableSet<DurationKey> index = status == null ? allByDuration : byStatusAndDuration.get(status);
+            if (sortTime == SortedByTime.LOWER) {
+                index = index.descendingSet();
+            }
+            NavigableSet<DurationKey> tail = cursor == null ? index : index.tailSet(DurationKey.parse(decode(cursor)), false);
+            Iterator<DurationKey> iterator = tail.iterator();
+            DurationKey last = null;
+            while (iterator.hasNext() && ids.size() < limit) {
+                last = iterator.next();
+                ids.add(last.getId());
+            }
+            if (iterator.hasNext() && last != null) {
+                nextCursor = encode(last.toString());
+            }
+        }
+        return new Page(ids, nextCursor);
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    @Value
+    public static class Page {
+        List<String> ids;
+        String nextCursor;
+    }
+
+    @Value
+    static class DurationKey implements Comparable<DurationKey> {
+        long duration;
+        String id;
+
+        static DurationKey parse(String value) {
+            int separator = value.indexOf(':');
+            return new DurationKey(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1));
+        }
+
+        @Override
+        public int compareTo(DurationKey other) {
+            int byDuration = Long.compare(duration, other.duration);
+            return byDuration != 0 ? byDuration : id.compareTo(other.id);
+        }
+
+        @Override
+        public String toString() {
+            return duration + ":" + id;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.dto.ExecutionPhase;
+import com.offer.java.offer.dto.ExecutionTrace;
+import com.offer.java.offer.dto.PhaseStats;
+import com.offer.java.offer.dto.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//Micrometer meters of the script lifecycle, exported through /actuator/metrics and /actuator/prometheus
+@Component
+public class ScriptMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry registry;
+    private final Timer queueWait;
+    private final Timer execution;
+    private final Timer pooledContextBuild;
+    private final Timer freshContextBuild;
+    private final Counter rejected;
+    private final Map<Status, Counter> statuses = new EnumMap<>(Status.class);
+    private final Map<ExecutionPhase, Timer> phases = new EnumMap<>(ExecutionPhase.class);
+
+    public ScriptMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.queueWait = Timer.builder("script.queue.wait")
+                .description("Time between submit and start of execution")
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.execution = Timer.builder("script.execution")
+                .description("Script evaluation time, context included")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.pooledContextBuild = contextBuildTimer("pool");
+        this.freshContextBuild = contextBuildTimer("fresh");
+        this.rejected = Counter.builder("script.rejected")
+                .description("Submits rejected because the queue was full")
+                .register(registry);
+        for (Status status : Status.values()) {
+            statuses.put(status, Counter.builder("script.status")
+                    .description("Scripts that entered a status")
+                    .tag("status", status.name())
+                    .register(registry));
+        }
+        //queue wait has its own timer above; context build is also split by source in script.context.build
+        for (ExecutionPhase phase : List.of(ExecutionPhase.CONTEXT_BUILD, ExecutionPhase.EVAL, ExecutionPhase.MAPPING)) {
+            phases.put(phase, Timer.builder("script.phase")
+                    .description("Time of one phase of a run, see ExecutionTrace")
+                    .tag("phase", phase.name())
+                    .publishPercentiles(PERCENTILES)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    public void recordQueueWait(long nanos) {
+        queueWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordExecution(long nanos) {
+        execution.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    //Queue wait is recorded by recordQueueWait when the run starts
+    public void recordTrace(ExecutionTrace trace) {
+        (trace.isPooledContext() ? pooledContextBuild : freshContextBuild).record(trace.getContextBuildUs(), TimeUnit.MICROSECONDS);
+        phases.get(ExecutionPhase.CONTEXT_BUILD).record(trace.getContextBuildUs(), TimeUnit.MICROSECONDS);
+        phases.get(ExecutionPhase.EVAL).record(trace.getEvalUs(), TimeUnit.MICROSECONDS);
+        phases.get(ExecutionPhase.MAPPING).record(trace.getMappingUs(), TimeUnit.MICROSECONDS);
+    }
+
+    //Percentiles per phase over the timers' recent window, phases in run order
+    public Map<ExecutionPhase, PhaseStats> getPhaseStats() {
+        Map<ExecutionPhase, PhaseStats> stats = new LinkedHashMap<>();
+        stats.put(ExecutionPhase.QUEUE_WAIT, phaseStats(queueWait.takeSnapshot()));
+        phases.forEach((phase, timer) -> stats.put(phase, phaseStats(timer.takeSnapshot())));
+        return stats;
+    }
+
+    private static PhaseStats phaseStats(HistogramSnapshot snapshot) {
+        PhaseStats.PhaseStatsBuilder builder = PhaseStats.builder()
+                .count(snapshot.count())
+                .meanMs(snapshot.mean(TimeUnit.MILLISECONDS))
+                .maxMs(snapshot.max(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            double value = percentile.value(TimeUnit.MILLISECONDS);
+            if (percentile.percentile() == 0.5) {
+                builder.p50Ms(value);
+            } else if (percentile.percentile() == 0.95) {
+                builder.p95Ms(value);
+            } else if (percentile.percentile() == 0.99) {
+                builder.p99Ms(value);
+            }
+        }
+        return builder.build();
+    }
+
+    public void recordStatus(Status status) {
+        statuses.get(status).increment();
+    }
+
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    public void recordCacheLookup(boolean hit) {
+        Counter.builder("script.cache.lookups")
+                .description("cache=true submissions answered from the cache or run")
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry)
+                .increment();
+    }
+
+    public void recordCallback(String outcome) {
+        Counter.builder("script.callbacks")
+                .description("Callback deliveries by outcome")
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+
+    public void recordEviction(String reason) {
+        Counter.builder("script.evictions")
+                .description("Finished scripts removed by the retention sweeper")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+    }
+
+    public void gauge(String name, String description, Supplier<Number> value) {
+        Gauge.builder(name, value)
+                .description(description)
+                .register(registry);
+    }
+
+    private Timer contextBuildTimer(String source) {
+        return Timer.builder("script.context.build")
+                .description("Time until a run has its context: borrowed from the pool or built for the run")
+                .tag("source", source)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,82 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+//stdout and stderr of one script, completed once the script reaches a final status
+@Getter
+public class ScriptOutput {
+
+    private final Object lock = new Object();
+    private final OutputBuffer out;
+    private final OutputBuffer err;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private boolean completed;
+    //bytes of the output tail copied into the stored result
+    private volatile long resultBytes;
+
+    public ScriptOutput() {
+        this(new ScriptProperties.Output());
+    }
+
+    public ScriptOutput(ScriptProperties.Output settings) {
+        this.out = new OutputBuffer(lock, settings, this::signal);
+        this.err = new OutputBuffer(lock, settings, this::signal);
+    }
+
+    public void complete() {
+        synchronized (lock) {
+            completed = true;
+            lock.notifyAll();
+        }
+        signal();
+    }
+
+    //Called on the writing thread after new output or completion, keep it short; returns the unsubscribe action
+    public Runnable addListener(Runnable listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    private void signal() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    public boolean isCompleted() {
+        synchronized (lock) {
+            return completed;
+        }
+    }
+
+    public void setResultBytes(long resultBytes) {
+        this.resultBytes = resultBytes;
+    }
+
+    public long retainedBytes() {
+        return out.retainedBytes() + err.retainedBytes() + resultBytes;
+    }
+
+    //Wait until there is output past the given offsets or the script completes
+    public void awaitOutput(long outOffset, long errOffset, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (lock) {
+            long remaining = timeoutMs;
+            while (!completed && out.size() <= outOffset && err.size() <= errOffset && remaining > 0) {
+                lock.wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    //Free heap buffers and spill files
+    public void close() {
+        complete();
+        out.close();
+        err.close();
+    }
+}
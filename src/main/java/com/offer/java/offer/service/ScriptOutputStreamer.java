@@ -0,0 +1,122 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptResponse;
+import com.offer.java.offer.dto.ScriptResult;
+import com.offer.java.offer.dto.StatusOperation;
+import com.offer.java.offer.exception.ApplicationException;
+import com.offer.java.offer.exception.TooManyRequestsException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Pushes new stdout/stderr of a script to the client as server-sent events
+@Component
+public class ScriptOutputStreamer {
+
+    public static final String EVENT_STDOUT = "stdout";
+    public static final String EVENT_STDERR = "stderr";
+    public static final String EVENT_STATUS = "status";
+
+    private static final String MESSAGE_TOO_MANY_STREAMS = "Too many open output streams, try again later";
+    private static final String MESSAGE_INVALID_EVENT_ID = "Invalid Last-Event-ID";
+
+    private final ScriptExecutionService scriptExecutionService;
+    private final ScriptProperties.Stream properties;
+    private final ThreadPoolExecutor executor;
+
+    public ScriptOutputStreamer(ScriptExecutionService scriptExecutionService, ScriptProperties properties) {
+        this.scriptExecutionService = scriptExecutionService;
+        this.properties = properties.getStream();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, this.properties.getMaxStreams(), 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "script-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    //Event ids are "<stdout offset>:<stderr offset>", so Last-Event-ID resumes where the client stopped
+    public SseEmitter stream(String id, long outOffset, long errOffset) {
+        ScriptOutput output = scriptExecutionService.getScriptOutput(id);
+        SseEmitter emitter = new SseEmitter(properties.getTimeoutMs());
+        try {
+            executor.execute(() -> pump(id, output, outOffset, errOffset, emitter));
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsException(ScriptResponse.builder()
+                    .message(MESSAGE_TOO_MANY_STREAMS)
+                    .id(id)
+                    .statusOperation(StatusOperation.ERROR)
+                    .build());
+        }
+        return emitter;
+    }
+
+    //Throws a 400 for an id this service did not send
+    public static long[] parseEventId(String eventId) {
+        try {
+            String[] offsets = eventId.split(":");
+            long[] parsed = {Long.parseLong(offsets[0]), offsets.length > 1 ? Long.parseLong(offsets[1]) : 0};
+            if (offsets.length <= 2 && parsed[0] >= 0 && parsed[1] >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            //reported below
+        }
+        throw new ApplicationException(HttpStatus.BAD_REQUEST, ScriptResponse.builder()
+                .message(MESSAGE_INVALID_EVENT_ID)
+                .id(eventId)
+                .statusOperation(StatusOperation.ERROR)
+                .build());
+    }
+
+    private void pump(String id, ScriptOutput output, long outOffset, long errOffset, SseEmitter emitter) {
+        try {
+            while (true) {
+                boolean completed = output.isCompleted();
+                outOffset = send(emitter, EVENT_STDOUT, output.getOut(), outOffset, errOffset, true);
+                errOffset = send(emitter, EVENT_STDERR, output.getErr(), outOffset, errOffset, false);
+                if (completed) {
+                    ScriptResult status = scriptExecutionService.getScriptStatus(id);
+                    emitter.send(SseEmitter.event()
+                            .name(EVENT_STATUS)
+                            .id(outOffset + ":" + errOffset)
+                            .data(status, MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                    return;
+                }
+                output.awaitOutput(outOffset, errOffset, properties.getPollIntervalMs());
+            }
+        } catch (IOException e) {
+            //client went away
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private long send(SseEmitter emitter, String name, OutputBuffer buffer, long outOffset, long errOffset, boolean stdout) throws IOException {
+        long offset = stdout ? outOffset : errOffset;
+        OutputChunk chunk;
+        while ((chunk = buffer.read(offset, properties.getChunkSize())).getData().length > 0) {
+            offset = chunk.getNextOffset();
+            emitter.send(SseEmitter.event()
+                    .name(name)
+                    .id(stdout ? offset + ":" + errOffset : outOffset + ":" + offset)
+                    .data(new String(chunk.getData(), StandardCharsets.UTF_8)));
+        }
+        return chunk.getNextOffset();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
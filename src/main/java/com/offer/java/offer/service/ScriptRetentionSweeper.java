@@ -0,0 +1,78 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptInfo;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+//Evicts finished scripts past max age, then the oldest or least recently read ones while a cap is exceeded.
+//Works on a snapshot and removes entries one by one, so executeScript is never blocked.
+@Component
+public class ScriptRetentionSweeper {
+
+    static final String REASON_AGE = "age";
+    static final String REASON_ENTRIES = "entries";
+    static final String REASON_OUTPUT_BYTES = "output-bytes";
+
+    private final ScriptExecutionService scriptExecutionService;
+    private final ScriptProperties.Retention settings;
+    private final ScriptMetrics metrics;
+
+    public ScriptRetentionSweeper(ScriptExecutionService scriptExecutionService, ScriptProperties properties, ScriptMetrics metrics) {
+        this.scriptExecutionService = scriptExecutionService;
+        this.settings = properties.getRetention();
+        this.metrics = metrics;
+    }
+
+    @Scheduled(fixedDelayString = "${script.retention.sweep-interval-ms:5000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        List<ScriptInfo> candidates = new ArrayList<>();
+        for (ScriptInfo scriptInfo : scriptExecutionService.getFinishedScripts()) {
+            if (settings.getMaxAgeMs() > 0 && now - finishedAt(scriptInfo) > settings.getMaxAgeMs()) {
+                evict(scriptInfo, REASON_AGE);
+            } else {
+                candidates.add(scriptInfo);
+            }
+        }
+
+        boolean capEntries = settings.getMaxEntries() > 0;
+        boolean capBytes = settings.getMaxOutputBytes() > 0;
+        if (!capEntries && !capBytes) {
+            return;
+        }
+
+        candidates.sort(settings.getOrder() == ScriptProperties.RetentionOrder.LRU
+                ? Comparator.comparingLong(ScriptInfo::getLastAccessTime)
+                : Comparator.comparingLong(ScriptRetentionSweeper::finishedAt));
+        long excessEntries = capEntries ? scriptExecutionService.getStoredCount() - settings.getMaxEntries() : 0;
+        long excessBytes = capBytes ? scriptExecutionService.getRetainedOutputBytes() - settings.getMaxOutputBytes() : 0;
+
+        for (ScriptInfo scriptInfo : candidates) {
+            if (excessEntries <= 0 && excessBytes <= 0) {
+                break;
+            }
+            long bytes = scriptExecutionService.getRetainedOutputBytes(scriptInfo.getId());
+            if (evict(scriptInfo, excessEntries > 0 ? REASON_ENTRIES : REASON_OUTPUT_BYTES)) {
+                excessEntries--;
+                excessBytes -= bytes;
+            }
+        }
+    }
+
+    private boolean evict(ScriptInfo scriptInfo, String reason) {
+        if (scriptExecutionService.evictScript(scriptInfo)) {
+            metrics.recordEviction(reason);
+            return true;
+        }
+        return false;
+    }
+
+    private static long finishedAt(ScriptInfo scriptInfo) {
+        return scriptInfo.getStartTime() + scriptInfo.getDuration();
+    }
+}
@@ -0,0 +1,32 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.dto.Priority;
+import com.offer.java.offer.dto.ScriptResult;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+public interface ScriptScheduler {
+
+    //Queue the task, throws RejectedExecutionException when the queue is full
+    Future<ScriptResult> submit(String scriptId, Priority priority, Callable<ScriptResult> task) throws RejectedExecutionException;
+
+    //Queue the tasks in order under one lock and return how many were queued;
+    //atomic queues all of them or none, otherwise the ones past the free capacity are left out
+    int submitAll(List<ScriptTask> tasks, boolean atomic) throws RejectedExecutionException;
+
+    //Run a blocking script on the caller thread within the scheduler's concurrency limit
+    <T> T runBlocking(Callable<T> task) throws Exception;
+
+    //Take a cancelled task out of the queue, so it frees its slot before a worker would discard it
+    void remove(Future<?> future);
+
+    //1-based position of the task in the queue, 0 when it is not waiting
+    int getQueuePosition(Future<?> future);
+
+    int getActiveCount();
+
+    int getQueueSize();
+}
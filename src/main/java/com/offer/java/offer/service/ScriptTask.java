@@ -0,0 +1,33 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.dto.Priority;
+import com.offer.java.offer.dto.ScriptResult;
+import lombok.Getter;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Getter
+public class ScriptTask extends FutureTask<ScriptResult> implements Comparable<ScriptTask> {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final String scriptId;
+    private final Priority priority;
+    private final long sequence;
+
+    public ScriptTask(String scriptId, Priority priority, Callable<ScriptResult> callable) {
+        super(callable);
+        this.scriptId = scriptId;
+        this.priority = priority;
+        this.sequence = SEQUENCE.incrementAndGet();
+    }
+
+    //Higher priority lane first, then submission order
+    @Override
+    public int compareTo(ScriptTask other) {
+        int byPriority = priority.compareTo(other.priority);
+        return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+    }
+}
@@ -0,0 +1,105 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptValidation;
+import com.offer.java.offer.exception.ScriptSyntaxException;
+import jakarta.annotation.PreDestroy;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.SourceSection;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Parses scripts on the submitting thread, using a few contexts of the shared engine that never run anything.
+//The engine keeps the parsed code of a cached Source, so the later run of the same Source does not parse it again
+@Component
+public class ScriptValidator {
+
+    private static final String LANGUAGE = "js";
+
+    private final Engine engine;
+    private final SourceCache sourceCache;
+    private final ScriptProperties.Validation properties;
+    private final LinkedBlockingQueue<Context> parsers = new LinkedBlockingQueue<>();
+    private final AtomicInteger created = new AtomicInteger();
+
+    public ScriptValidator(Engine engine, SourceCache sourceCache, ScriptProperties properties) {
+        this.engine = engine;
+        this.sourceCache = sourceCache;
+        this.properties = properties.getValidation();
+    }
+
+    //Source to run the script with; throws ScriptSyntaxException when it does not parse
+    public Source parse(String script) {
+        Source source = sourceCache.getSource(script);
+        check(source);
+        return source;
+    }
+
+    //Throws ScriptSyntaxException when the source does not parse
+    public void check(Source source) {
+        if (properties.isEnabled()) {
+            ScriptValidation validation = validate(source);
+            if (!validation.isValid()) {
+                throw new ScriptSyntaxException(validation);
+            }
+        }
+    }
+
+    public ScriptValidation validate(String script) {
+        return validate(sourceCache.getSource(script));
+    }
+
+    public ScriptValidation validate(Source source) {
+        Context parser = borrow();
+        try {
+            parser.parse(source);
+            return ScriptValidation.builder().valid(true).build();
+        } catch (PolyglotException e) {
+            if (!e.isSyntaxError()) {
+                //not the script's fault, its run reports whatever this was
+                return ScriptValidation.builder().valid(true).build();
+            }
+            SourceSection location = e.getSourceLocation();
+            return ScriptValidation.builder()
+                    .valid(false)
+                    .message(e.getMessage())
+                    .line(location == null ? null : location.getStartLine())
+                    .column(location == null ? null : location.getStartColumn())
+                    .build();
+        } finally {
+            parsers.offer(parser);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        List<Context> idle = new ArrayList<>();
+        parsers.drainTo(idle);
+        idle.forEach(Context::close);
+    }
+
+    //Parsers are made on demand up to the configured number, then callers wait for a free one
+    private Context borrow() {
+        Context parser = parsers.poll();
+        if (parser != null) {
+            return parser;
+        }
+        if (created.incrementAndGet() <= Math.max(1, properties.getParsers())) {
+            return Context.newBuilder(LANGUAGE).engine(engine).build();
+        }
+        created.decrementAndGet();
+        try {
+            return parsers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ResourceLimit;
+import com.offer.java.offer.dto.ResourceUsage;
+import com.offer.java.offer.dto.ScriptLimits;
+import jakarta.annotation.PreDestroy;
+import org.graalvm.polyglot.Context;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+//Measures what a run uses and closes its context once a time or heap limit is crossed.
+//Statement limits are enforced by GraalVM itself, see ScriptExecutionService.
+@Component
+public class ScriptWatchdog {
+
+    private final ScriptProperties.Limits settings;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "script-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ScriptWatchdog(ScriptProperties properties) {
+        this.settings = properties.getLimits();
+    }
+
+    //Requested limits over the configured defaults; 0 or less disables a limit
+    public ScriptLimits resolve(ScriptLimits requested) {
+        ScriptLimits limits = requested == null ? new ScriptLimits() : requested;
+        return ScriptLimits.builder()
+                .timeoutMs(positive(limits.getTimeoutMs(), settings.getTimeoutMs()))
+                .cpuTimeMs(positive(limits.getCpuTimeMs(), settings.getCpuTimeMs()))
+                .statementLimit(positive(limits.getStatementLimit(), settings.getStatementLimit()))
+                .heapBytes(positive(limits.getHeapBytes(), settings.getHeapBytes()))
+                .build();
+    }
+
+    //Start watching the calling thread
+    public Watch watch(ScriptLimits limits) {
+        Watch watch = new Watch(Thread.currentThread(), limits);
+        if (limits.getTimeoutMs() != null || limits.getCpuTimeMs() != null || limits.getHeapBytes() != null) {
+            long interval = Math.max(1, settings.getCheckIntervalMs());
+            watch.check = timer.scheduleAtFixedRate(watch::check, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        return watch;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private static Long positive(Long requested, long configured) {
+        long value = requested != null ? requested : configured;
+        return value > 0 ? value : null;
+    }
+
+    private long cpuTime(Thread thread) {
+        return threads.isThreadCpuTimeSupported() ? threads.getThreadCpuTime(thread.getId()) : -1;
+    }
+
+    private long allocatedBytes(Thread thread) {
+        return threads instanceof com.sun.management.ThreadMXBean sunThreads && sunThreads.isThreadAllocatedMemorySupported()
+                ? sunThreads.getThreadAllocatedBytes(thread.getId())
+                : -1;
+    }
+
+    public class Watch {
+
+        private final Thread thread;
+        private final ScriptLimits limits;
+        private final long startNanos = System.nanoTime();
+        private final long startCpu;
+        private final long startAllocated;
+        private ScheduledFuture<?> check;
+
+        private Context context;
+        private ResourceLimit exceeded;
+        private boolean cancelled;
+        private boolean evaluated;
+        private boolean stopped;
+
+        private Watch(Thread thread, ScriptLimits limits) {
+            this.thread = thread;
+            this.limits = limits;
+            this.startCpu = cpuTime(thread);
+            this.startAllocated = allocatedBytes(thread);
+        }
+
+        //Context to close when a limit is crossed
+        public void bind(Context context) {
+            synchronized (this) {
+                this.context = context;
+                if ((exceeded == null && !cancelled) || stopped) {
+                    return;
+                }
+            }
+            context.close(true);
+        }
+
+        //After this the watchdog no longer closes the context, check getExceeded() for a close already under way
+        public synchronized void unbind() {
+            context = null;
+            evaluated = true;
+        }
+
+        //Stop the run from another thread: interrupt its context, close it if the script is still inside after the grace period.
+        //The interrupted context is never handed to another run, the caller marks it broken once isCancelled() is set.
+        //False when the run already left its context or ends on a limit
+        public boolean cancel(Duration grace) {
+            Context target;
+            synchronized (this) {
+                if (cancelled) {
+                    return true;
+                }
+                if (stopped || evaluated || exceeded != null) {
+                    return false;
+                }
+                cancelled = true;
+                target = context;
+            }
+            if (target != null) {
+                interrupt(target, grace);
+            }
+            return true;
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        //Record a limit GraalVM already enforced, the context is cancelled by the engine
+        public synchronized void limitReached(ResourceLimit limit) {
+            if (exceeded == null) {
+                exceeded = limit;
+            }
+        }
+
+        public synchronized ResourceLimit getExceeded() {
+            return exceeded;
+        }
+
+        public String describe() {
+            ResourceLimit limit = getExceeded();
+            if (limit == null) {
+                return null;
+            }
+            return switch (limit) {
+                case TIMEOUT -> "Timeout of " + limits.getTimeoutMs() + " ms exceeded";
+                case CPU_TIME -> "CPU time limit of " + limits.getCpuTimeMs() + " ms exceeded";
+                case STATEMENTS -> "Statement limit of " + limits.getStatementLimit() + " exceeded";
+                case HEAP -> "Heap allocation limit of " + limits.getHeapBytes() + " bytes exceeded";
+            };
+        }
+
+        //Stop checking and return what the run used
+        public ResourceUsage stop() {
+            synchronized (this) {
+                stopped = true;
+                context = null;
+            }
+            if (check != null) {
+                check.cancel(false);
+            }
+            long cpu = cpuTime(thread);
+            long allocated = allocatedBytes(thread);
+            return new ResourceUsage(
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                    cpu < 0 || startCpu < 0 ? null : TimeUnit.NANOSECONDS.toMillis(cpu - startCpu),
+                    allocated < 0 || startAllocated < 0 ? null : allocated - startAllocated);
+        }
+
+        private void check() {
+            if (limits.getTimeoutMs() != null && System.nanoTime() - startNanos > TimeUnit.MILLISECONDS.toNanos(limits.getTimeoutMs())) {
+                exceed(ResourceLimit.TIMEOUT);
+            } else if (limits.getCpuTimeMs() != null && startCpu >= 0
+                    && cpuTime(thread) - startCpu > TimeUnit.MILLISECONDS.toNanos(limits.getCpuTimeMs())) {
+                exceed(ResourceLimit.CPU_TIME);
+            } else if (limits.getHeapBytes() != null && startAllocated >= 0
+                    && allocatedBytes(thread) - startAllocated > limits.getHeapBytes()) {
+                exceed(ResourceLimit.HEAP);
+            }
+        }
+
+        //The context is closed outside the lock, closing waits for the script thread to leave it
+        private void exceed(ResourceLimit limit) {
+            Context target;
+            synchronized (this) {
+                if (stopped || exceeded != null) {
+                    return;
+                }
+                exceeded = limit;
+                target = context;
+            }
+            if (target != null) {
+                target.close(true);
+            }
+        }
+
+        //An interrupt returns at once when the script has not entered eval yet, so it is repeated until the run unbinds.
+        //Never waits past the grace period: the context is then closed, which also ends scripts that ignore interrupts
+        private void interrupt(Context target, Duration grace) {
+            long deadline = System.nanoTime() + grace.toNanos();
+            try {
+                while (true) {
+                    synchronized (this) {
+                        if (evaluated || stopped) {
+                            return;
+                        }
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        target.close(true);
+                        return;
+                    }
+                    target.interrupt(Duration.ofNanos(remaining));
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            } catch (TimeoutException e) {
+                target.close(true);
+            } catch (IllegalStateException e) {
+                //closed by a limit or by the run itself in the meantime
+            }
+        }
+    }
+}
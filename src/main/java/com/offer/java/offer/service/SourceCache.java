@@ -0,0 +1,72 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import org.graalvm.polyglot.Source;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class SourceCache {
+
+    private static final String LANGUAGE = "js";
+
+    private final ConcurrentHashMap<String, Source> sources = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final int maxSize;
+
+    public SourceCache(ScriptProperties properties) {
+        this.maxSize = properties.getSourceCache().getMaxSize();
+    }
+
+    //Same script text -> same Source instance, so the shared engine can reuse its parsed code
+    public Source getSource(String script) {
+        String hash = hash(script);
+        Source source = sources.get(hash);
+        if (source != null) {
+            hits.incrementAndGet();
+            return source;
+        }
+        misses.incrementAndGet();
+        evictIfFull();
+        return sources.computeIfAbsent(hash, key -> Source.newBuilder(LANGUAGE, script, "script-" + key.substring(0, 12))
+                .cached(true)
+                .buildLiteral());
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return sources.size();
+    }
+
+    private void evictIfFull() {
+        Iterator<String> iterator = sources.keySet().iterator();
+        while (sources.size() >= maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    public static String hash(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
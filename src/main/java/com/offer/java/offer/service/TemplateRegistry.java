@@ -0,0 +1,92 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptResponse;
+import com.offer.java.offer.dto.ScriptTemplate;
+import com.offer.java.offer.dto.StatusOperation;
+import com.offer.java.offer.exception.ApplicationException;
+import com.offer.java.offer.exception.NotFoundException;
+import org.graalvm.polyglot.Source;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+//Named scripts registered once. Each keeps one Source, so the shared engine parses it once for all runs;
+//runs only differ by the arguments bound to args.
+@Component
+public class TemplateRegistry {
+
+    private static final String LANGUAGE = "js";
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    private static final String MESSAGE_TEMPLATE_NOT_FOUND = "Template with this name not found";
+    private static final String MESSAGE_INVALID_NAME = "Template name must be 1-64 letters, digits, '.', '_' or '-'";
+    private static final String MESSAGE_TOO_MANY_TEMPLATES = "Template limit reached, delete a template first";
+
+    private final ConcurrentHashMap<String, Template> templates = new ConcurrentHashMap<>();
+    private final ScriptValidator validator;
+    private final int maxSize;
+
+    public TemplateRegistry(ScriptValidator validator, ScriptProperties properties) {
+        this.validator = validator;
+        this.maxSize = properties.getTemplate().getMaxSize();
+    }
+
+    //Register or replace; runs already queued keep the source they were submitted with.
+    //A template that does not parse is rejected here instead of failing every run
+    public ScriptTemplate register(String name, String script) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new ApplicationException(HttpStatus.BAD_REQUEST, response(MESSAGE_INVALID_NAME, name));
+        }
+        if (!templates.containsKey(name) && templates.size() >= maxSize) {
+            throw new ApplicationException(HttpStatus.CONFLICT, response(MESSAGE_TOO_MANY_TEMPLATES, name));
+        }
+        Source source = Source.newBuilder(LANGUAGE, script, "template-" + name)
+                .cached(true)
+                .buildLiteral();
+        validator.check(source);
+        Template template = new Template(name, script, source, System.currentTimeMillis());
+        templates.put(name, template);
+        return template.toDto();
+    }
+
+    public Template get(String name) {
+        Template template = templates.get(name);
+        if (template == null) {
+            throw new NotFoundException(response(MESSAGE_TEMPLATE_NOT_FOUND, name));
+        }
+        return template;
+    }
+
+    public List<ScriptTemplate> getAll() {
+        return templates.values().stream()
+                .sorted(Comparator.comparing(Template::name))
+                .map(Template::toDto)
+                .toList();
+    }
+
+    public void remove(String name) {
+        if (templates.remove(name) == null) {
+            throw new NotFoundException(response(MESSAGE_TEMPLATE_NOT_FOUND, name));
+        }
+    }
+
+    private static ScriptResponse response(String message, String name) {
+        return ScriptResponse.builder()
+                .message(message)
+                .id(name)
+                .statusOperation(StatusOperation.ERROR)
+                .build();
+    }
+
+    public record Template(String name, String script, Source source, long createdAt) {
+
+        public ScriptTemplate toDto() {
+            return new ScriptTemplate(name, script, createdAt);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.Priority;
+import com.offer.java.offer.dto.ScriptResult;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+//Runs every script on its own virtual thread, a semaphore caps how many run at once
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadScriptScheduler implements ScriptScheduler {
+
+    private final BoundedPriorityQueue<ScriptTask> queue;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("script-virtual-");
+    private final Set<ScriptTask> running = ConcurrentHashMap.newKeySet();
+    private final Thread dispatcher;
+
+    public VirtualThreadScriptScheduler(ScriptProperties properties) {
+        ScriptProperties.Executor settings = properties.getExecutor();
+        this.queue = new BoundedPriorityQueue<>(settings.getQueueCapacity());
+        this.maxConcurrent = settings.getMaxConcurrent();
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.dispatcher = new Thread(this::dispatch, "script-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @Override
+    public Future<ScriptResult> submit(String scriptId, Priority priority, Callable<ScriptResult> task) {
+        ScriptTask scriptTask = new ScriptTask(scriptId, priority, task);
+        if (!queue.offer(scriptTask)) {
+            throw new RejectedExecutionException("Script queue is full");
+        }
+        return scriptTask;
+    }
+
+    @Override
+    public int submitAll(List<ScriptTask> tasks, boolean atomic) {
+        return queue.offerAll(tasks, atomic);
+    }
+
+    @Override
+    public <T> T runBlocking(Callable<T> task) throws Exception {
+        permits.acquire();
+        try {
+            return task.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void remove(Future<?> future) {
+        if (future instanceof ScriptTask) {
+            queue.remove(future);
+        }
+    }
+
+    @Override
+    public int getQueuePosition(Future<?> future) {
+        return future instanceof ScriptTask ? queue.positionOf(future) : 0;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.interrupt();
+        queue.forEach(task -> task.cancel(false));
+        running.forEach(task -> task.cancel(true));
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                permits.acquire();
+                ScriptTask task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    permits.release();
+                    throw e;
+                }
+                running.add(task);
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        running.remove(task);
+                        permits.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
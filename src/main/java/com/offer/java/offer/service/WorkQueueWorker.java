@@ -0,0 +1,82 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.QueuedScript;
+import com.offer.java.offer.exception.TooManyRequestsException;
+import com.offer.java.offer.repository.WorkQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+//Claims scripts from the shared work queue while this node has an idle executor thread.
+//The local queue stays empty, so scripts wait where every node can still take them.
+@Component
+@ConditionalOnProperty(name = "script.cluster.queue", havingValue = "file")
+public class WorkQueueWorker {
+
+    private final WorkQueue workQueue;
+    private final ScriptExecutionService scriptExecutionService;
+    private final ScriptScheduler scheduler;
+    private final ScriptProperties properties;
+    private final Thread thread = new Thread(this::pollLoop, "script-queue-worker");
+    private volatile boolean running = true;
+
+    public WorkQueueWorker(WorkQueue workQueue, ScriptExecutionService scriptExecutionService, ScriptScheduler scheduler,
+                           ScriptProperties properties) {
+        this.workQueue = workQueue;
+        this.scriptExecutionService = scriptExecutionService;
+        this.scheduler = scheduler;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() {
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join();
+    }
+
+    //Start one queued script here, false when there was nothing to start
+    public boolean claimNext() {
+        if (scheduler.getQueueSize() > 0 || scheduler.getActiveCount() >= properties.getExecutor().getPoolSize()) {
+            return false;
+        }
+        QueuedScript script = workQueue.claim();
+        if (script == null) {
+            return false;
+        }
+        try {
+            scriptExecutionService.runClaimed(script);
+        } catch (TooManyRequestsException e) {
+            workQueue.release(script);
+            return false;
+        }
+        return true;
+    }
+
+    private void pollLoop() {
+        long interval = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getCluster().getPollIntervalMs()));
+        while (running) {
+            boolean started;
+            try {
+                started = claimNext();
+            } catch (RuntimeException e) {
+                //shared directory unavailable, try again on the next poll
+                started = false;
+            }
+            if (!started) {
+                LockSupport.parkNanos(interval);
+            }
+        }
+    }
+}
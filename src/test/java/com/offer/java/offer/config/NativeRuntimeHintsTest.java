@@ -0,0 +1,39 @@
+package com.offer.java.offer.config;
+
+import com.offer.java.offer.dto.ExecutionTrace;
+import com.offer.java.offer.dto.QueuedScript;
+import com.offer.java.offer.dto.ScriptRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NativeRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @Test
+    public void testRegisterHints_dtosBoundWithNestedTypes() throws Exception {
+        new NativeRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(ScriptRecord.class.getMethod("getTrace")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onMethod(QueuedScript.class.getMethod("setScript", String.class)).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(ExecutionTrace.class).test(hints));
+    }
+
+    @Test
+    public void testRegisterHints_graalJsResources() {
+        new NativeRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        //ICU data ships as separate files under icudt72b/, nested directories included
+        assertNotNull(getClass().getClassLoader().getResource("com/ibm/icu/impl/data/icudt72b/root.res"));
+        assertTrue(RuntimeHintsPredicates.resource().forResource("com/ibm/icu/impl/data/icudt72b/root.res").test(hints));
+        assertTrue(RuntimeHintsPredicates.resource().forResource("com/ibm/icu/impl/data/icudt72b/brkitr/root.res").test(hints));
+        assertTrue(RuntimeHintsPredicates.resource().forResource("com/oracle/truffle/js/runtime/resources/parser.js").test(hints));
+        assertTrue(RuntimeHintsPredicates.resource().forBundle("com.oracle.js.parser.resources.Messages").test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(TypeReference.of("com.ibm.icu.text.CollatorServiceShim")).test(hints));
+    }
+}
@@ -0,0 +1,51 @@
+package com.offer.java.offer.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class MetricsIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    public void testPrometheus_exposesScriptMetrics() throws Exception {
+        HttpResponse<String> executed = client.send(HttpRequest.newBuilder(uri("/api/scripts/execute?blocking=true"))
+                        .POST(HttpRequest.BodyPublishers.ofString("console.log('metrics')"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, executed.statusCode());
+
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/actuator/prometheus")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        String body = response.body();
+        assertTrue(body.contains("script_execution_seconds_bucket"));
+        assertTrue(body.contains("script_queue_wait_seconds_count"));
+        assertTrue(body.contains("script_context_build_seconds_count{source=\"pool\""));
+        assertTrue(body.contains("script_status_total{status=\"COMPLETED\""));
+        assertTrue(body.contains("script_executor_active"));
+        assertTrue(body.contains("script_executor_queued"));
+        assertTrue(body.contains("script_retained"));
+        assertTrue(body.contains("script_output_retained_bytes"));
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
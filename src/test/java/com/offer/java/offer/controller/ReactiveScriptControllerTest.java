@@ -0,0 +1,112 @@
+package com.offer.java.offer.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.dto.ScriptResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+public class ReactiveScriptControllerTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ApplicationContext context;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testReactiveProfile_replacesServletController() {
+        assertEquals(1, context.getBeanNamesForType(ReactiveScriptController.class).length);
+        assertEquals(0, context.getBeanNamesForType(ScriptController.class).length);
+        assertEquals(1, context.getBeanNamesForType(NettyReactiveWebServerFactory.class).length);
+    }
+
+    @Test
+    public void testExecute_blocking_completesWhenScriptEnds() throws Exception {
+        HttpResponse<String> response = post("/api/scripts/execute?blocking=true", "console.log('reactive')");
+
+        ScriptResult result = mapper.readValue(response.body(), ScriptResult.class);
+        assertEquals(200, response.statusCode());
+        assertEquals("COMPLETED", result.getStatus().name());
+        assertEquals("reactive\n", result.getOutput());
+    }
+
+    @Test
+    public void testStream_returnsRawOutputUntilCompletion() throws Exception {
+        String id = mapper.readValue(post("/api/scripts/execute?blocking=false",
+                "for (let i = 0; i < 3; i++) { console.log('line ' + i); }").body(), ScriptResult.class).getId();
+
+        HttpResponse<String> response = get("/api/scripts/" + id + "/stream");
+
+        assertEquals(200, response.statusCode());
+        assertEquals("line 0\nline 1\nline 2\n", response.body());
+        assertEquals("line 2\n", get("/api/scripts/" + id + "/stream?offset=14").body());
+    }
+
+    @Test
+    public void testExecuteBatch_blocking_returnsAllResults() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/scripts/execute/batch?blocking=true"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[\"console.log(1)\", \"console.log(2)\"]"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        JsonNode batch = mapper.readTree(response.body());
+        assertEquals(200, response.statusCode());
+        assertEquals("1\n", batch.get("results").get(0).get("output").asText());
+        assertEquals("2\n", batch.get("results").get(1).get("output").asText());
+    }
+
+    @Test
+    public void testExecuteBatch_bestEffortSyntaxError_waitsForTheOthers() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/scripts/execute/batch?blocking=true&mode=BEST_EFFORT"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[\"console.log(1)\", \"console.log(\", \"console.log(3)\"]"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        JsonNode batch = mapper.readTree(response.body());
+        assertEquals(200, response.statusCode());
+        assertEquals("1\n", batch.get("results").get(0).get("output").asText());
+        assertEquals("ERROR", batch.get("results").get(1).get("status").asText());
+        assertEquals(1, batch.get("results").get(1).get("validation").get("index").asInt());
+        assertEquals("3\n", batch.get("results").get(2).get("output").asText());
+    }
+
+    @Test
+    public void testGetInfo_unknownScript_returnsNotFound() throws Exception {
+        HttpResponse<String> response = get("/api/scripts/missing");
+
+        assertEquals(404, response.statusCode());
+        assertEquals("missing", mapper.readTree(response.body()).get("id").asText());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -3,7 +3,10 @@ package com.offer.java.offer.controller;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.offer.java.offer.dto.*;
+import com.offer.java.offer.exception.ScriptSyntaxException;
+import com.offer.java.offer.exception.TooManyRequestsException;
 import com.offer.java.offer.service.ScriptExecutionService;
+import com.offer.java.offer.service.ScriptOutputStreamer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -11,12 +14,18 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -26,6 +35,9 @@ public class ScriptControllerTest {
     @MockBean
     private ScriptExecutionService service;
 
+    @MockBean
+    private ScriptOutputStreamer streamer;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -43,7 +55,11 @@ public class ScriptControllerTest {
         ScriptResult scriptResult = new ScriptResult();
         scriptResult.setStatus(Status.COMPLETED);
 
-        when(service.executeScript(script, blocking)).thenReturn(scriptResult);
+        when(service.executeScript(ScriptSubmission.builder()
+                .script(script)
+                .blocking(blocking)
+                .limits(new ScriptLimits())
+                .build())).thenReturn(scriptResult);
 
         mockMvc.perform(post("/api/scripts/execute")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -61,7 +77,11 @@ public class ScriptControllerTest {
         ScriptResult scriptResult = new ScriptResult();
         scriptResult.setStatus(Status.COMPLETED);
 
-        when(service.executeScript(script, blocking)).thenReturn(scriptResult);
+        when(service.executeScript(ScriptSubmission.builder()
+                .script(script)
+                .blocking(blocking)
+                .limits(new ScriptLimits())
+                .build())).thenReturn(scriptResult);
 
         mockMvc.perform(post("/api/scripts/execute")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -72,12 +92,174 @@ public class ScriptControllerTest {
     }
 
 
+    @Test
+    public void testExecuteScript_highPriority_returnsQueuePosition() throws Exception {
+
+        String script = "console.log('fdsfd')";
+        ScriptResult scriptResult = new ScriptResult("id-test");
+        scriptResult.setQueuePosition(1);
+
+        when(service.executeScript(ScriptSubmission.builder()
+                .script(script)
+                .priority(Priority.HIGH)
+                .limits(new ScriptLimits())
+                .build())).thenReturn(scriptResult);
+
+        mockMvc.perform(post("/api/scripts/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("blocking", "false")
+                        .param("priority", "HIGH")
+                        .content(script))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is(Status.QUEUE.toString())))
+                .andExpect(jsonPath("$.queuePosition", is(1)));
+    }
+
+    @Test
+    public void testExecuteScript_queueFull_returnsTooManyRequests() throws Exception {
+
+        String script = "console.log('fdsfd')";
+
+        when(service.executeScript(ScriptSubmission.builder()
+                .script(script)
+                .limits(new ScriptLimits())
+                .build())).thenThrow(new TooManyRequestsException(
+                ScriptResponse.builder().statusOperation(StatusOperation.ERROR).message("Execution queue is full, try again later").build()));
+
+        mockMvc.perform(post("/api/scripts/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("blocking", "false")
+                        .content(script))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.statusOperation", is(StatusOperation.ERROR.toString())));
+    }
+
+    @Test
+    public void testExecuteScript_syntaxError_returnsBadRequestWithPosition() throws Exception {
+
+        String script = "let x = ;";
+        ScriptValidation validation = ScriptValidation.builder().valid(false).message("Expected an operand but found ;").line(1).column(9).build();
+
+        when(service.executeScript(ScriptSubmission.builder()
+                .script(script)
+                .limits(new ScriptLimits())
+                .build())).thenThrow(new ScriptSyntaxException(validation));
+
+        mockMvc.perform(post("/api/scripts/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("blocking", "false")
+                        .content(script))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.valid", is(false)))
+                .andExpect(jsonPath("$.line", is(1)))
+                .andExpect(jsonPath("$.column", is(9)));
+    }
+
+    @Test
+    public void testValidateScript_returnValidation() throws Exception {
+
+        when(service.validateScript("console.log(1)")).thenReturn(ScriptValidation.builder().valid(true).build());
+
+        mockMvc.perform(post("/api/scripts/validate")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("console.log(1)"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.valid", is(true)));
+    }
+
+    @Test
+    public void testExecuteScript_withLimits_passesLimitsToService() throws Exception {
+
+        String script = "while (true) {}";
+        ScriptResult scriptResult = new ScriptResult("id-test");
+        scriptResult.setStatus(Status.LIMIT_EXCEEDED);
+
+        when(service.executeScript(ScriptSubmission.builder()
+                .script(script)
+                .blocking(true)
+                .limits(new ScriptLimits(500L, 200L, 10000L, null))
+                .build())).thenReturn(scriptResult);
+
+        mockMvc.perform(post("/api/scripts/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("blocking", "true")
+                        .param("timeoutMs", "500")
+                        .param("cpuTimeMs", "200")
+                        .param("statementLimit", "10000")
+                        .content(script))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is(Status.LIMIT_EXCEEDED.toString())));
+    }
+
+    @Test
+    public void testExecuteScript_cacheTrue_returnsCachedResult() throws Exception {
+
+        String script = "console.log('pure')";
+        ScriptResult scriptResult = new ScriptResult("id-test");
+        scriptResult.setStatus(Status.COMPLETED);
+        scriptResult.setCached(true);
+
+        when(service.executeScript(ScriptSubmission.builder()
+                .script(script)
+                .blocking(true)
+                .limits(new ScriptLimits())
+                .cache(true)
+                .build())).thenReturn(scriptResult);
+
+        mockMvc.perform(post("/api/scripts/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("blocking", "true")
+                        .param("cache", "true")
+                        .content(script))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cached", is(true)));
+    }
+
+    @Test
+    public void testExecuteBatch_returnsBatchResult() throws Exception {
+
+        List<String> scripts = List.of("console.log(1)", "console.log(2)");
+        BatchResult batchResult = new BatchResult("batch", 2, 0, List.of(new ScriptResult("batch-0"), new ScriptResult("batch-1")));
+
+        when(service.executeBatch(scripts, false, Priority.NORMAL, new ScriptLimits(), BatchMode.BEST_EFFORT)).thenReturn(batchResult);
+
+        mockMvc.perform(post("/api/scripts/execute/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("blocking", "false")
+                        .param("mode", "BEST_EFFORT")
+                        .content("[\"console.log(1)\", \"console.log(2)\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", is(2)))
+                .andExpect(jsonPath("$.results[1].id", is("batch-1")));
+    }
+
+    @Test
+    public void testExecuteScript_withCallbackUrl_passesUrlToService() throws Exception {
+
+        String script = "console.log('fdsfd')";
+        ScriptResult scriptResult = new ScriptResult("id-test");
+
+        when(service.executeScript(ScriptSubmission.builder()
+                .script(script)
+                .limits(new ScriptLimits())
+                .callbackUrl("http://client/hook")
+                .build())).thenReturn(scriptResult);
+
+        mockMvc.perform(post("/api/scripts/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("blocking", "false")
+                        .param("callbackUrl", "http://client/hook")
+                        .content(script))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is("id-test")));
+    }
+
     @Test
     public void testListScripts_defaultSorting_returnsScriptInfoList() throws Exception {
 
         List<ScriptInfoShort> expectedScripts = Arrays.asList(new ScriptInfoShort(), new ScriptInfoShort());
-        when(service.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL))
-                .thenReturn(expectedScripts);
+        when(service.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL, null, null))
+                .thenReturn(new ScriptPage(expectedScripts, null));
 
         MvcResult result = mockMvc.perform(get("/api/scripts"))
                 .andExpect(status().isOk())
@@ -97,8 +279,8 @@ public class ScriptControllerTest {
         scriptInfoShort2.setDuration(100);
 
         List<ScriptInfoShort> expectedScripts = Arrays.asList(scriptInfoShort1, scriptInfoShort2);
-        when(service.getAllScripts(SortedByTime.UPPER, SortedByStatus.ALL))
-                .thenReturn(expectedScripts);
+        when(service.getAllScripts(SortedByTime.UPPER, SortedByStatus.ALL, null, null))
+                .thenReturn(new ScriptPage(expectedScripts, null));
 
         MvcResult result = mockMvc.perform(get("/api/scripts")
                         .param("sortedTime", "UPPER"))
@@ -124,8 +306,8 @@ public class ScriptControllerTest {
         scriptInfoShort2.setResult(scriptResultDTO2);
 
         List<ScriptInfoShort> expectedScripts = Arrays.asList(scriptInfoShort1, scriptInfoShort2);
-        when(service.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.QUEUE))
-                .thenReturn(expectedScripts);
+        when(service.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.QUEUE, null, null))
+                .thenReturn(new ScriptPage(expectedScripts, null));
 
         MvcResult result = mockMvc.perform(get("/api/scripts")
                         .param("sortedStatus", Status.QUEUE.toString()))
@@ -138,6 +320,21 @@ public class ScriptControllerTest {
     }
 
 
+    @Test
+    public void testListScripts_withCursor_returnsNextCursorHeader() throws Exception {
+
+        List<ScriptInfoShort> expectedScripts = List.of(new ScriptInfoShort());
+        when(service.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL, "cursor-1", 1))
+                .thenReturn(new ScriptPage(expectedScripts, "cursor-2"));
+
+        mockMvc.perform(get("/api/scripts")
+                        .param("limit", "1")
+                        .param("cursor", "cursor-1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "cursor-2"))
+                .andExpect(jsonPath("$.length()", is(1)));
+    }
+
     @Test
     public void testGetScriptInfo_returnScriptInfoResponse() throws Exception {
 
@@ -153,6 +350,77 @@ public class ScriptControllerTest {
                 .andExpect(jsonPath("$.id", is(id)));
     }
 
+    @Test
+    public void testGetContextPoolStats_returnContextPoolStats() throws Exception {
+
+        ContextPoolStats stats = ContextPoolStats.builder().size(10).idle(2).hits(5).build();
+
+        when(service.getContextPoolStats()).thenReturn(stats);
+
+        mockMvc.perform(get("/api/scripts/context-pool"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size", is(10)))
+                .andExpect(jsonPath("$.idle", is(2)))
+                .andExpect(jsonPath("$.hits", is(5)));
+    }
+
+    @Test
+    public void testGetPhaseStats_returnStatsPerPhase() throws Exception {
+
+        PhaseStats eval = PhaseStats.builder().count(3).p50Ms(1.5).p99Ms(4.0).build();
+
+        when(service.getPhaseStats()).thenReturn(Map.of(ExecutionPhase.EVAL, eval));
+
+        mockMvc.perform(get("/api/scripts/phase-stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.EVAL.count", is(3)))
+                .andExpect(jsonPath("$.EVAL.p50Ms", is(1.5)))
+                .andExpect(jsonPath("$.EVAL.p99Ms", is(4.0)));
+    }
+
+    @Test
+    public void testGetScriptOutput_returnScriptOutputResponse() throws Exception {
+        String id = "script-id";
+        ScriptOutputResponse response = ScriptOutputResponse.builder()
+                .id(id).channel(OutputChannel.STDERR).offset(10).nextOffset(14).size(14).data("oops").build();
+
+        when(service.readOutput(id, OutputChannel.STDERR, 10, 100)).thenReturn(response);
+
+        mockMvc.perform(get("/api/scripts/{id}/output", id)
+                        .param("offset", "10")
+                        .param("limit", "100")
+                        .param("channel", "STDERR"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data", is("oops")))
+                .andExpect(jsonPath("$.nextOffset", is(14)));
+    }
+
+    @Test
+    public void testStreamScriptOutput_resumesFromLastEventId() throws Exception {
+        String id = "script-id";
+
+        when(streamer.stream(id, 12, 3)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/scripts/{id}/stream", id)
+                        .header("Last-Event-ID", "12:3"))
+                .andExpect(request().asyncStarted());
+
+        verify(streamer).stream(id, 12, 3);
+    }
+
+    @Test
+    public void testStreamScriptOutput_malformedLastEventId_returnBadRequest() throws Exception {
+        String id = "script-id";
+
+        mockMvc.perform(get("/api/scripts/{id}/stream", id)
+                        .header("Last-Event-ID", "12:abc"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", is("Invalid Last-Event-ID")))
+                .andExpect(jsonPath("$.id", is("12:abc")));
+
+        verify(streamer, never()).stream(anyString(), anyLong(), anyLong());
+    }
+
     @Test
     public void testStopScript_returnResponseScriptResponse() throws Exception {
         String id = "script-id";
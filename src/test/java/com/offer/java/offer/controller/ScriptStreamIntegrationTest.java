@@ -0,0 +1,77 @@
+package com.offer.java.offer.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.dto.ScriptResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class ScriptStreamIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testStream_pushesOutputAndFinalStatus() throws Exception {
+        String id = submit("for (let i = 0; i < 5; i++) { console.log('line ' + i); } console.error('done');");
+
+        String body = get("/api/scripts/" + id + "/stream");
+
+        assertTrue(body.contains("event:stdout"));
+        assertTrue(body.contains("data:line 4"));
+        assertTrue(body.contains("event:stderr"));
+        assertTrue(body.contains("data:done"));
+        assertTrue(body.contains("event:status"));
+        assertTrue(body.contains("\"status\":\"COMPLETED\""));
+    }
+
+    @Test
+    public void testStream_resumesFromOffset() throws Exception {
+        String id = submit("console.log('first'); console.log('second');");
+
+        String body = get("/api/scripts/" + id + "/stream?offset=6");
+
+        assertTrue(body.contains("data:second"));
+        assertTrue(!body.contains("data:first"));
+        assertTrue(body.contains("id:13:0"));
+    }
+
+    @Test
+    public void testStream_unknownScript_returnsNotFound() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/scripts/missing/stream")).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(404, response.statusCode());
+    }
+
+    private String submit(String script) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/scripts/execute?blocking=false"))
+                        .POST(HttpRequest.BodyPublishers.ofString(script))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        return mapper.readValue(response.body(), ScriptResult.class).getId();
+    }
+
+    private String get(String path) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return response.body();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
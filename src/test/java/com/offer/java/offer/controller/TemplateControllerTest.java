@@ -0,0 +1,84 @@
+package com.offer.java.offer.controller;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.*;
+import com.offer.java.offer.exception.NotFoundException;
+import com.offer.java.offer.service.ScriptExecutionService;
+import com.offer.java.offer.service.ScriptValidator;
+import com.offer.java.offer.service.TemplateRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(TemplateController.class)
+public class TemplateControllerTest {
+    @MockBean
+    private ScriptExecutionService service;
+
+    @MockBean
+    private TemplateRegistry templateRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testRegisterTemplate_returnsTemplate() throws Exception {
+
+        when(templateRegistry.register("greet", "console.log(args.name)")).thenReturn(new ScriptTemplate("greet", "console.log(args.name)", 1L));
+
+        mockMvc.perform(put("/api/templates/greet")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("console.log(args.name)"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("greet")));
+    }
+
+    @Test
+    public void testExecuteTemplate_passesJsonArguments() throws Exception {
+
+        TemplateRegistry registry = new TemplateRegistry(mock(ScriptValidator.class), new ScriptProperties());
+        registry.register("greet", "console.log(args.name)");
+        TemplateRegistry.Template greet = registry.get("greet");
+        ScriptResult scriptResult = new ScriptResult("id-test");
+        scriptResult.setStatus(Status.COMPLETED);
+        scriptResult.setOutput("ann\n");
+
+        when(templateRegistry.get("greet")).thenReturn(greet);
+        when(service.executeTemplate(eq(greet), eq("{\"name\":\"ann\"}"), eq(true), eq(Priority.NORMAL), eq(new ScriptLimits())))
+                .thenReturn(scriptResult);
+
+        mockMvc.perform(post("/api/templates/greet/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("blocking", "true")
+                        .content("{ \"name\": \"ann\" }"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.output", is("ann\n")));
+    }
+
+    @Test
+    public void testExecuteTemplate_unknownTemplate_returnsNotFound() throws Exception {
+
+        when(templateRegistry.get("missing")).thenThrow(new NotFoundException(ScriptResponse.builder()
+                .message("Template with this name not found")
+                .id("missing")
+                .statusOperation(StatusOperation.ERROR)
+                .build()));
+
+        mockMvc.perform(post("/api/templates/missing/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .param("blocking", "true")
+                        .content("{}"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.id", is("missing")));
+    }
+}
@@ -0,0 +1,71 @@
+package com.offer.java.offer.load;
+
+import com.offer.java.offer.OfferApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//Run with: mvn test -Dload=true -Dtest=BlockingExecutionLoadTest (Java 21)
+@EnabledIfSystemProperty(named = "load", matches = "true")
+@EnabledForJreRange(min = JRE.JAVA_21)
+public class BlockingExecutionLoadTest {
+
+    private static final int REQUESTS = 1000;
+
+    @Test
+    public void testBlockingThroughput_platformVersusVirtualThreads() throws Exception {
+        double platform = measure(false);
+        double virtual = measure(true);
+
+        System.out.printf("%d concurrent blocking requests: platform threads %.1f req/s, virtual threads %.1f req/s%n",
+                REQUESTS, platform, virtual);
+    }
+
+    private double measure(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(OfferApplication.class)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "script.context-pool.size=50",
+                        "script.context-pool.borrow-timeout-ms=60000")
+                .run()) {
+            int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/scripts/execute?blocking=true"))
+                    .POST(HttpRequest.BodyPublishers.ofString("let s = 0; for (let i = 0; i < 10000; i++) { s += i; } console.log(s)"))
+                    .build();
+
+            send(client, request, 50);
+
+            long start = System.nanoTime();
+            long ok = send(client, request, REQUESTS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            assertEquals(REQUESTS, ok);
+            return ok / seconds;
+        }
+    }
+
+    private long send(HttpClient client, HttpRequest request, int count) {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        return responses.stream()
+                .map(CompletableFuture::join)
+                .filter(response -> response.statusCode() == 200)
+                .count();
+    }
+}
@@ -0,0 +1,140 @@
+package com.offer.java.offer.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.OfferApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//Run with: mvn test -Dload=true -Dtest=ClusterThroughputLoadTest
+//Starts 1, 2 and 3 nodes as separate JVMs on one shared queue directory, submits every script to the first node
+//and measures until all results are published. Nodes run few threads each, so adding nodes is what adds capacity.
+@EnabledIfSystemProperty(named = "load", matches = "true")
+public class ClusterThroughputLoadTest {
+
+    private static final int MAX_NODES = 3;
+    private static final int SCRIPTS = 300;
+    private static final int THREADS_PER_NODE = 2;
+    private static final String SCRIPT = "let s = 0; for (let i = 0; i < 200000; i++) { s += i; } console.log(s)";
+
+    @TempDir
+    Path directory;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testThroughput_asNodesAreAdded() throws Exception {
+        for (int nodes = 1; nodes <= MAX_NODES; nodes++) {
+            double throughput = measure(nodes, directory.resolve("cluster-" + nodes));
+            System.out.printf("%d node(s), %d threads each: %.1f scripts/s%n", nodes, THREADS_PER_NODE, throughput);
+        }
+    }
+
+    private double measure(int count, Path shared) throws Exception {
+        List<Process> nodes = new ArrayList<>();
+        List<Integer> ports = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; i++) {
+                int port = freePort();
+                ports.add(port);
+                nodes.add(start(port, shared, i));
+            }
+            for (int port : ports) {
+                awaitStarted(port);
+            }
+
+            long start = System.nanoTime();
+            List<String> ids = new ArrayList<>();
+            for (int i = 0; i < SCRIPTS; i++) {
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri(ports.get(0), "/api/scripts/execute?blocking=false"))
+                        .POST(HttpRequest.BodyPublishers.ofString(SCRIPT))
+                        .build(), HttpResponse.BodyHandlers.ofString());
+                assertEquals(200, response.statusCode());
+                ids.add(mapper.readTree(response.body()).get("id").asText());
+            }
+            awaitResults(shared.resolve("results"));
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            //any node answers for a script, whichever node ran it
+            String last = ids.get(ids.size() - 1);
+            HttpResponse<String> info = client.send(HttpRequest.newBuilder(uri(ports.get(count - 1), "/api/scripts/" + last)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals("COMPLETED", mapper.readTree(info.body()).get("result").get("status").asText());
+            return SCRIPTS / seconds;
+        } finally {
+            for (Process node : nodes) {
+                node.destroy();
+                node.waitFor(30, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private Process start(int port, Path shared, int index) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), OfferApplication.class.getName(),
+                "--server.port=" + port,
+                "--script.cluster.queue=file",
+                "--script.cluster.directory=" + shared,
+                "--script.cluster.node-id=node-" + index,
+                "--script.executor.pool-size=" + THREADS_PER_NODE,
+                "--script.executor.queue-capacity=" + SCRIPTS)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private void awaitStarted(int port) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            try {
+                if (client.send(HttpRequest.newBuilder(uri(port, "/api/scripts/context-pool")).build(),
+                        HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                //not listening yet
+            }
+            Thread.sleep(200);
+        }
+        throw new AssertionError("Node on port " + port + " did not start");
+    }
+
+    private void awaitResults(Path results) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            try (Stream<Path> files = Files.list(results)) {
+                if (files.count() >= SCRIPTS) {
+                    return;
+                }
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Scripts did not finish");
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static URI uri(int port, String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
@@ -0,0 +1,96 @@
+package com.offer.java.offer.load;
+
+import com.offer.java.offer.OfferApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//Run with: mvn test -Dload=true -Dtest=ReactiveExecutionLoadTest
+//Many more concurrent blocking requests than servlet threads: MVC queues connections behind busy threads,
+//WebFlux keeps them all open on a few event loop threads while the executor runs the scripts.
+@EnabledIfSystemProperty(named = "load", matches = "true")
+public class ReactiveExecutionLoadTest {
+
+    private static final int REQUESTS = 2000;
+    private static final int SERVLET_THREADS = 50;
+
+    @Test
+    public void testBlockingThroughput_servletVersusReactive() throws Exception {
+        Result servlet = measure(false);
+        Result reactive = measure(true);
+
+        System.out.printf("%d concurrent blocking requests: servlet %.1f req/s (peak %d request threads), reactive %.1f req/s (peak %d request threads)%n",
+                REQUESTS, servlet.throughput(), servlet.peakThreads(), reactive.throughput(), reactive.peakThreads());
+    }
+
+    private Result measure(boolean reactive) throws Exception {
+        //arguments, not default properties, so they win over application.properties
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(OfferApplication.class).run(
+                "--spring.profiles.active=" + (reactive ? "reactive" : "default"),
+                "--server.port=0",
+                "--server.tomcat.threads.max=" + SERVLET_THREADS,
+                "--script.executor.queue-capacity=" + REQUESTS,
+                "--script.retention.max-entries=0")) {
+            int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/scripts/execute?blocking=true"))
+                    .POST(HttpRequest.BodyPublishers.ofString("let s = 0; for (let i = 0; i < 10000; i++) { s += i; } console.log(s)"))
+                    .build();
+
+            send(client, request, 50);
+
+            AtomicInteger peakThreads = new AtomicInteger();
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread sampler = new Thread(() -> {
+                while (running.get()) {
+                    peakThreads.accumulateAndGet(requestThreads(reactive ? "reactor-http" : "http-nio"), Math::max);
+                    LockSupport.parkNanos(10_000_000);
+                }
+            });
+            sampler.start();
+            long start = System.nanoTime();
+            long ok = send(client, request, REQUESTS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            running.set(false);
+            sampler.join();
+
+            assertEquals(REQUESTS, ok);
+            return new Result(ok / seconds, peakThreads.get());
+        }
+    }
+
+    //Tomcat workers or Netty event loops, the threads that hold requests
+    private static int requestThreads(String prefix) {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && thread.getName().startsWith(prefix))
+                .count();
+    }
+
+    private long send(HttpClient client, HttpRequest request, int count) {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        return responses.stream()
+                .map(CompletableFuture::join)
+                .filter(response -> response.statusCode() == 200)
+                .count();
+    }
+
+    private record Result(double throughput, int peakThreads) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.offer.java.offer.load;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+//Run after packaging: mvn -Pnative -DskipTests package && mvn test -Dload=true -Dtest=StartupLatencyLoadTest [-Dstartup.native=target/offer]
+//Starts the service RUNS times per variant and measures the time until it answers, the first /execute (GraalJS still cold)
+//and the median of the requests after it. Variants: the JAR, the same JAR with spring.aot.enabled when it was built
+//with -Pnative, and the native executable when -Dstartup.native points to one.
+@EnabledIfSystemProperty(named = "load", matches = "true")
+public class StartupLatencyLoadTest {
+
+    private static final int RUNS = 5;
+    private static final int WARM_REQUESTS = 20;
+    private static final String SCRIPT = "let s = 0; for (let i = 0; i < 1000; i++) { s += i; } console.log(s)";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    public void testStartupAndFirstRequest_perVariant() throws Exception {
+        Map<String, List<String>> variants = variants();
+        assertFalse(variants.isEmpty(), "No JAR in target, run mvn package first");
+
+        System.out.printf("%-8s %12s %16s %16s%n", "variant", "startup ms", "first request ms", "warm median ms");
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            long[] startup = new long[RUNS];
+            long[] first = new long[RUNS];
+            long[] warm = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                long[] measured = measure(variant.getValue());
+                startup[run] = measured[0];
+                first[run] = measured[1];
+                warm[run] = measured[2];
+            }
+            System.out.printf("%-8s %12.0f %16.1f %16.2f%n", variant.getKey(),
+                    median(startup) / 1e6, median(first) / 1e6, median(warm) / 1e6);
+        }
+    }
+
+    private Map<String, List<String>> variants() throws IOException {
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path jar = findJar();
+        if (jar != null) {
+            variants.put("jar", List.of(java, "-jar", jar.toString()));
+            try (JarFile file = new JarFile(jar.toFile())) {
+                if (file.getManifest().getMainAttributes().getValue("Spring-Boot-Native-Processed") != null) {
+                    variants.put("aot", List.of(java, "-Dspring.aot.enabled=true", "-jar", jar.toString()));
+                }
+            }
+        }
+        String executable = System.getProperty("startup.native");
+        if (executable != null && new File(executable).canExecute()) {
+            variants.put("native", List.of(executable));
+        }
+        return variants;
+    }
+
+    //Nanos until the service answered, of the first /execute and the median of the warm ones
+    private long[] measure(List<String> command) throws Exception {
+        int port = freePort();
+        List<String> arguments = new ArrayList<>(command);
+        arguments.add("--server.port=" + port);
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(arguments)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            awaitStarted(port);
+            long startup = System.nanoTime() - start;
+
+            long first = execute(port);
+            long[] warm = new long[WARM_REQUESTS];
+            for (int i = 0; i < WARM_REQUESTS; i++) {
+                warm[i] = execute(port);
+            }
+            return new long[]{startup, first, median(warm)};
+        } finally {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private long execute(int port) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri(port, "/api/scripts/execute?blocking=true"))
+                .POST(HttpRequest.BodyPublishers.ofString(SCRIPT))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        long elapsed = System.nanoTime() - start;
+        assertEquals(200, response.statusCode());
+        return elapsed;
+    }
+
+    private void awaitStarted(int port) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            try {
+                if (client.send(HttpRequest.newBuilder(uri(port, "/actuator/health")).build(),
+                        HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                //not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Service on port " + port + " did not start");
+    }
+
+    private static Path findJar() throws IOException {
+        Path target = Path.of("target");
+        if (!Files.isDirectory(target)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(target)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".jar"))
+                    .filter(path -> !path.getFileName().toString().endsWith("-plain.jar"))
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static URI uri(int port, String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
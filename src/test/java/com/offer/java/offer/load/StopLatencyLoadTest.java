@@ -0,0 +1,76 @@
+package com.offer.java.offer.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.OfferApplication;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//Run with: mvn test -Dload=true -Dtest=StopLatencyLoadTest
+//Time from DELETE /stop of a running while (true) {} until the answer, which comes once the script is STOPPED
+@EnabledIfSystemProperty(named = "load", matches = "true")
+public class StopLatencyLoadTest {
+
+    private static final int RUNS = 20;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testStop_tightLoop() throws Exception {
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(OfferApplication.class)
+                .properties("server.port=0")
+                .run()) {
+            String base = "http://localhost:" + app.getEnvironment().getRequiredProperty("local.server.port", Integer.class) + "/api/scripts";
+            long[] latencies = new long[RUNS];
+            //first run warms up the engine and is not measured
+            for (int i = -1; i < RUNS; i++) {
+                String id = submit(base);
+                awaitProcessing(base, id);
+
+                long start = System.nanoTime();
+                HttpResponse<String> stopped = client.send(HttpRequest.newBuilder(URI.create(base + "/" + id + "/stop")).DELETE().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                long latency = System.nanoTime() - start;
+
+                assertEquals(200, stopped.statusCode());
+                assertEquals("STOPPED", status(base, id));
+                if (i >= 0) {
+                    latencies[i] = latency;
+                }
+            }
+            Arrays.sort(latencies);
+            System.out.printf("stop of while (true) {} (stop-grace-ms %s): median %.2f ms, max %.2f ms%n",
+                    app.getEnvironment().getProperty("script.limits.stop-grace-ms"), latencies[RUNS / 2] / 1e6, latencies[RUNS - 1] / 1e6);
+        }
+    }
+
+    private String submit(String base) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + "/execute?blocking=false"))
+                .POST(HttpRequest.BodyPublishers.ofString("while (true) {}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        return mapper.readTree(response.body()).get("id").asText();
+    }
+
+    private void awaitProcessing(String base, String id) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!"PROCESSING".equals(status(base, id)) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private String status(String base, String id) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(base + "/" + id)).build(), HttpResponse.BodyHandlers.ofString());
+        return mapper.readTree(response.body()).path("result").path("status").asText();
+    }
+}
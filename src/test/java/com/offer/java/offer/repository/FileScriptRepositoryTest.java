@@ -0,0 +1,172 @@
+package com.offer.java.offer.repository;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ResourceUsage;
+import com.offer.java.offer.dto.ScriptInfo;
+import com.offer.java.offer.dto.ScriptLimits;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.offer.java.offer.dto.Status.COMPLETED;
+import static com.offer.java.offer.dto.Status.ERROR;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileScriptRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private ScriptProperties properties;
+    private FileScriptRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ScriptProperties();
+        properties.getRepository().setDirectory(directory.toString());
+        repository = open();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        repository.close();
+    }
+
+    @Test
+    public void testSavedScriptsSurviveRestart() throws InterruptedException {
+        ScriptInfo scriptInfo = completed("first", "line\n");
+        scriptInfo.setLimits(ScriptLimits.builder().timeoutMs(500L).build());
+        scriptInfo.setUsage(new ResourceUsage(12, 10L, 2048L));
+        repository.save(scriptInfo);
+        repository.save(completed("second", "other\n"));
+
+        FileScriptRepository reopened = reopen();
+
+        assertEquals(2, reopened.count());
+        ScriptInfo restored = reopened.findById("first");
+        assertEquals("console.log('first')", restored.getScript());
+        assertEquals(COMPLETED, restored.getResult().getStatus());
+        assertEquals("line\n", restored.getResult().getOutput());
+        assertEquals(scriptInfo.getStartTime(), restored.getStartTime());
+        assertEquals(500L, restored.getLimits().getTimeoutMs());
+        assertEquals(2048L, restored.getUsage().getAllocatedBytes());
+    }
+
+    @Test
+    public void testLatestStateIsPersisted() throws InterruptedException {
+        ScriptInfo scriptInfo = new ScriptInfo("changing", "console.log(1)");
+        repository.save(scriptInfo);
+        scriptInfo.finish(ERROR);
+        scriptInfo.getResult().setError("boom");
+        repository.save(scriptInfo);
+
+        ScriptInfo restored = reopen().findById("changing");
+
+        assertEquals(ERROR, restored.getResult().getStatus());
+        assertEquals("boom", restored.getResult().getError());
+    }
+
+    @Test
+    public void testRemovedScriptsStayRemoved() throws InterruptedException {
+        ScriptInfo kept = completed("kept", "");
+        ScriptInfo removed = completed("removed", "");
+        repository.save(kept);
+        repository.save(removed);
+        repository.flush();
+
+        assertFalse(repository.remove("removed", kept));
+        assertTrue(repository.remove("removed", removed));
+
+        FileScriptRepository reopened = reopen();
+        assertNull(reopened.findById("removed"));
+        assertNotNull(reopened.findById("kept"));
+    }
+
+    @Test
+    public void testCompactionWritesSnapshotAndDropsOldSegments() throws Exception {
+        repository.close();
+        properties.getRepository().setCompactAfterBytes(1);
+        repository = open();
+
+        for (int i = 0; i < 5; i++) {
+            repository.save(completed("script-" + i, "out " + i + "\n"));
+            repository.flush();
+        }
+        repository.remove("script-0");
+        repository.flush();
+
+        List<String> files = files();
+        assertTrue(files.stream().anyMatch(name -> name.startsWith("snapshot-")));
+        assertEquals(1, files.stream().filter(name -> name.startsWith("snapshot-")).count());
+
+        FileScriptRepository reopened = reopen();
+        assertEquals(4, reopened.count());
+        assertEquals("out 4\n", reopened.findById("script-4").getResult().getOutput());
+    }
+
+    @Test
+    public void testTornTailIsIgnored() throws Exception {
+        repository.save(completed("whole", "ok\n"));
+        repository.flush();
+        Path segment = directory.resolve(files().stream().filter(name -> name.startsWith("segment-")).findFirst().orElseThrow());
+        Files.write(segment, new byte[]{0, 0, 1, 0, 7, 7}, StandardOpenOption.APPEND);
+
+        FileScriptRepository reopened = reopen();
+
+        assertEquals(1, reopened.count());
+        reopened.save(completed("after", ""));
+        assertEquals(2, reopen().count());
+    }
+
+    @Test
+    public void testClose_writesPendingSavesAndNeverHangs() throws InterruptedException {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 50; i++) {
+                FileScriptRepository other = open();
+                other.save(completed("script-" + i, ""));
+                other.close();
+                //a second close or a flush after close finds no writer and returns
+                other.close();
+                other.flush();
+            }
+        });
+
+        assertEquals(50, reopen().count());
+    }
+
+    private FileScriptRepository open() {
+        FileScriptRepository opened = new FileScriptRepository(properties);
+        opened.open();
+        return opened;
+    }
+
+    //Close the current instance and load the directory again
+    private FileScriptRepository reopen() throws InterruptedException {
+        repository.close();
+        repository = open();
+        return repository;
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).toList();
+        }
+    }
+
+    private static ScriptInfo completed(String id, String output) {
+        ScriptInfo scriptInfo = new ScriptInfo(id, "console.log('" + id + "')");
+        scriptInfo.finish(COMPLETED);
+        scriptInfo.getResult().setOutput(output);
+        scriptInfo.setDuration(5);
+        return scriptInfo;
+    }
+}
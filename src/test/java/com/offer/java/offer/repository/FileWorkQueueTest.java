@@ -0,0 +1,210 @@
+package com.offer.java.offer.repository;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.Priority;
+import com.offer.java.offer.dto.QueuedScript;
+import com.offer.java.offer.dto.ScriptRecord;
+import com.offer.java.offer.dto.ScriptResultDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static com.offer.java.offer.dto.Status.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileWorkQueueTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<FileWorkQueue> nodes = new ArrayList<>();
+
+    private FileWorkQueue first;
+    private FileWorkQueue second;
+
+    @BeforeEach
+    void setUp() {
+        first = node("first", 30000);
+        second = node("second", 30000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(FileWorkQueue::close);
+    }
+
+    @Test
+    public void testClaim_highestPriorityThenOldestFirst() {
+        first.offer(script("low", Priority.LOW, 1));
+        first.offer(script("normal-late", Priority.NORMAL, 3));
+        first.offer(script("normal-early", Priority.NORMAL, 2));
+        first.offer(script("high", Priority.HIGH, 4));
+
+        assertEquals("high", second.claim().getId());
+        assertEquals("normal-early", second.claim().getId());
+        assertEquals("normal-late", first.claim().getId());
+        assertEquals("low", first.claim().getId());
+        assertNull(second.claim());
+    }
+
+    @Test
+    public void testClaim_concurrentNodes_eachScriptClaimedOnce() throws Exception {
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            first.offer(script("script-" + i, Priority.NORMAL, i));
+        }
+
+        Set<String> claimed = ConcurrentHashMap.newKeySet();
+        List<String> duplicates = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> workers = new ArrayList<>();
+        for (FileWorkQueue node : List.of(first, second, first, second)) {
+            workers.add(executor.submit(() -> {
+                QueuedScript script;
+                while ((script = node.claim()) != null) {
+                    if (!claimed.add(script.getId())) {
+                        duplicates.add(script.getId());
+                    }
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(count, claimed.size());
+        assertTrue(duplicates.isEmpty());
+        assertEquals(0, first.size());
+    }
+
+    @Test
+    public void testFind_followsScriptThroughItsStates() {
+        first.offer(script("job", Priority.NORMAL, 1));
+        assertEquals(QUEUE, second.find("job").getResult().getStatus());
+
+        QueuedScript claimed = second.claim();
+        assertEquals(PROCESSING, first.find("job").getResult().getStatus());
+        assertEquals("console.log('job')", first.find("job").getScript());
+
+        second.complete(record(claimed.getId(), "job\n"));
+
+        ScriptRecord finished = first.find("job");
+        assertEquals(COMPLETED, finished.getResult().getStatus());
+        assertEquals("job\n", finished.getResult().getOutput());
+        assertNull(first.find("missing"));
+    }
+
+    @Test
+    public void testRelease_scriptCanBeClaimedAgain() {
+        first.offer(script("job", Priority.NORMAL, 1));
+        QueuedScript claimed = first.claim();
+
+        first.release(claimed);
+
+        assertEquals(QUEUE, second.find("job").getResult().getStatus());
+        assertEquals("job", second.claim().getId());
+    }
+
+    @Test
+    public void testOffer_fullQueue_rejected() {
+        ScriptProperties properties = properties("small", 30000);
+        properties.getExecutor().setQueueCapacity(2);
+        FileWorkQueue small = open(properties);
+
+        assertTrue(small.offer(script("a", Priority.NORMAL, 1)));
+        assertTrue(small.offer(script("b", Priority.NORMAL, 2)));
+        assertFalse(small.offer(script("c", Priority.NORMAL, 3)));
+    }
+
+    @Test
+    public void testClaimOfSilentNode_returnsToQueue() throws Exception {
+        FileWorkQueue crashed = node("crashed", 300);
+        FileWorkQueue survivor = node("survivor", 300);
+        crashed.offer(script("job", Priority.NORMAL, 1));
+        crashed.claim();
+        crashed.close();
+        Files.setLastModifiedTime(directory.resolve("nodes").resolve("crashed"), FileTime.fromMillis(0));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (survivor.find("job").getResult().getStatus() != QUEUE && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals("job", survivor.claim().getId());
+    }
+
+    @Test
+    public void testRemove_resultGoneForEveryNode() {
+        first.offer(script("job", Priority.NORMAL, 1));
+        second.complete(record(second.claim().getId(), "job\n"));
+
+        first.remove("job");
+
+        assertNull(second.find("job"));
+    }
+
+    @Test
+    public void testResultsPastMaxAge_removedByHeartbeat() throws Exception {
+        ScriptProperties properties = properties("sweeper", 300);
+        properties.getRetention().setMaxAgeMs(60_000);
+        first.offer(script("old", Priority.NORMAL, 1));
+        first.offer(script("new", Priority.NORMAL, 2));
+        first.complete(record(first.claim().getId(), "old\n"));
+        first.complete(record(first.claim().getId(), "new\n"));
+        Files.setLastModifiedTime(directory.resolve("results").resolve("old.json"), FileTime.fromMillis(0));
+
+        open(properties);
+
+        assertNull(first.find("old"));
+        assertEquals(COMPLETED, first.find("new").getResult().getStatus());
+    }
+
+    private FileWorkQueue node(String nodeId, long claimTimeoutMs) {
+        return open(properties(nodeId, claimTimeoutMs));
+    }
+
+    private ScriptProperties properties(String nodeId, long claimTimeoutMs) {
+        ScriptProperties properties = new ScriptProperties();
+        properties.getCluster().setQueue(ScriptProperties.WorkQueueType.FILE);
+        properties.getCluster().setDirectory(directory.toString());
+        properties.getCluster().setNodeId(nodeId);
+        properties.getCluster().setClaimTimeoutMs(claimTimeoutMs);
+        return properties;
+    }
+
+    private FileWorkQueue open(ScriptProperties properties) {
+        FileWorkQueue queue = new FileWorkQueue(properties);
+        queue.open();
+        nodes.add(queue);
+        return queue;
+    }
+
+    private static QueuedScript script(String id, Priority priority, long submittedAt) {
+        return QueuedScript.builder()
+                .id(id)
+                .script("console.log('" + id + "')")
+                .priority(priority)
+                .submittedAt(submittedAt)
+                .build();
+    }
+
+    private static ScriptRecord record(String id, String output) {
+        ScriptRecord record = new ScriptRecord();
+        record.setId(id);
+        ScriptResultDTO result = new ScriptResultDTO();
+        result.setStatus(COMPLETED);
+        result.setOutput(output);
+        record.setResult(result);
+        return record;
+    }
+}
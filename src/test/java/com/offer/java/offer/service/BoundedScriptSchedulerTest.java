@@ -0,0 +1,139 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.Priority;
+import com.offer.java.offer.dto.ScriptResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedScriptSchedulerTest {
+
+    private BoundedScriptScheduler scheduler;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        ScriptProperties properties = new ScriptProperties();
+        properties.getExecutor().setPoolSize(1);
+        properties.getExecutor().setQueueCapacity(2);
+        scheduler = new BoundedScriptScheduler(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testSubmit_highPriorityJumpsAheadInQueue() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        scheduler.submit("running", Priority.NORMAL, () -> {
+            started.countDown();
+            release.await();
+            return new ScriptResult("running");
+        });
+        started.await();
+
+        Future<?> low = scheduler.submit("low", Priority.LOW, blockedTask());
+        Future<?> high = scheduler.submit("high", Priority.HIGH, blockedTask());
+
+        assertEquals(1, scheduler.getActiveCount());
+        assertEquals(2, scheduler.getQueueSize());
+        assertEquals(1, scheduler.getQueuePosition(high));
+        assertEquals(2, scheduler.getQueuePosition(low));
+    }
+
+    @Test
+    void testSubmit_queueFull_rejects() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        scheduler.submit("running", Priority.NORMAL, () -> {
+            started.countDown();
+            release.await();
+            return new ScriptResult("running");
+        });
+        started.await();
+        scheduler.submit("1", Priority.NORMAL, blockedTask());
+        scheduler.submit("2", Priority.NORMAL, blockedTask());
+
+        assertThrows(RejectedExecutionException.class, () -> scheduler.submit("3", Priority.HIGH, blockedTask()));
+    }
+
+    @Test
+    void testRemove_cancelledTaskFreesItsSlot() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        scheduler.submit("running", Priority.NORMAL, () -> {
+            started.countDown();
+            release.await();
+            return new ScriptResult("running");
+        });
+        started.await();
+        Future<?> cancelled = scheduler.submit("1", Priority.NORMAL, blockedTask());
+        scheduler.submit("2", Priority.NORMAL, blockedTask());
+
+        cancelled.cancel(false);
+        scheduler.remove(cancelled);
+
+        assertEquals(1, scheduler.getQueueSize());
+        assertEquals(0, scheduler.getQueuePosition(cancelled));
+        assertNotNull(scheduler.submit("3", Priority.NORMAL, blockedTask()));
+    }
+
+    @Test
+    void testSubmitAll_runsTasksWithoutPriorSubmit() throws Exception {
+        ScriptTask first = new ScriptTask("1", Priority.NORMAL, () -> new ScriptResult("1"));
+        ScriptTask second = new ScriptTask("2", Priority.NORMAL, () -> new ScriptResult("2"));
+
+        assertEquals(2, scheduler.submitAll(List.of(first, second), true));
+
+        assertEquals("1", first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("2", second.get(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    void testSubmitAll_atomicRejectsWholeBatch() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        scheduler.submit("running", Priority.NORMAL, () -> {
+            started.countDown();
+            release.await();
+            return new ScriptResult("running");
+        });
+        started.await();
+        scheduler.submit("1", Priority.NORMAL, blockedTask());
+
+        List<ScriptTask> batch = List.of(new ScriptTask("2", Priority.NORMAL, blockedTask()), new ScriptTask("3", Priority.NORMAL, blockedTask()));
+
+        assertEquals(0, scheduler.submitAll(batch, true));
+        assertEquals(1, scheduler.getQueueSize());
+        assertEquals(1, scheduler.submitAll(batch, false));
+        assertEquals(2, scheduler.getQueueSize());
+        assertEquals(2, scheduler.getQueuePosition(batch.get(0)));
+        assertEquals(0, scheduler.getQueuePosition(batch.get(1)));
+    }
+
+    @Test
+    void testGetQueuePosition_notQueued_returnsZero() throws Exception {
+        Future<ScriptResult> future = scheduler.submit("done", Priority.NORMAL, () -> new ScriptResult("done"));
+        future.get();
+
+        assertEquals(0, scheduler.getQueuePosition(future));
+        assertEquals(0, scheduler.getQueuePosition(null));
+    }
+
+    private Callable<ScriptResult> blockedTask() {
+        return () -> {
+            release.await();
+            return new ScriptResult();
+        };
+    }
+}
@@ -0,0 +1,215 @@
+package com.offer.java.offer.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptResult;
+import com.offer.java.offer.dto.Status;
+import com.offer.java.offer.exception.ApplicationException;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CallbackDispatcherTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final BlockingQueue<Request> received = new LinkedBlockingQueue<>();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean blockResponses;
+
+    private HttpServer server;
+    private String url;
+    private ScriptProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private CallbackDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hook", exchange -> {
+            received.add(new Request(exchange.getRequestHeaders().getFirst("X-Callback-Attempt"),
+                    exchange.getRequestHeaders().getFirst("X-Script-Id"), exchange.getRequestBody().readAllBytes()));
+            if (blockResponses) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(failuresLeft.getAndDecrement() > 0 ? 500 : 204, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/hook";
+
+        properties = new ScriptProperties();
+        properties.getCallback().setInitialBackoffMs(10);
+        properties.getCallback().setMaxBackoffMs(40);
+        properties.getCallback().setMaxAttempts(3);
+        //the test receiver listens on loopback
+        properties.getCallback().setAllowPrivateAddresses(true);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void testDispatch_postsResultAsJson() throws Exception {
+        dispatcher = newDispatcher();
+
+        assertTrue(dispatcher.dispatch(url, result("id-1")));
+
+        Request request = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(request);
+        JsonNode body = mapper.readTree(request.body());
+        assertEquals("id-1", body.get("id").asText());
+        assertEquals("COMPLETED", body.get("status").asText());
+        assertEquals("ok\n", body.get("output").asText());
+        assertEquals("id-1", request.scriptId());
+        assertEquals("1", request.attempt());
+        awaitCount("delivered", 1);
+    }
+
+    @Test
+    void testDispatch_retriesUntilAccepted() throws Exception {
+        failuresLeft.set(2);
+        dispatcher = newDispatcher();
+
+        dispatcher.dispatch(url, result("id-1"));
+
+        List<String> attempts = List.of(received.poll(5, TimeUnit.SECONDS).attempt(),
+                received.poll(5, TimeUnit.SECONDS).attempt(), received.poll(5, TimeUnit.SECONDS).attempt());
+        assertEquals(List.of("1", "2", "3"), attempts);
+        awaitCount("delivered", 1);
+        assertEquals(2, count("retried"));
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    @Test
+    void testDispatch_givesUpAfterMaxAttempts() throws Exception {
+        failuresLeft.set(Integer.MAX_VALUE);
+        dispatcher = newDispatcher();
+
+        dispatcher.dispatch(url, result("id-1"));
+
+        awaitCount("failed", 1);
+        assertEquals(3, received.size());
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    @Test
+    void testDispatch_queueFull_dropsCallback() throws Exception {
+        blockResponses = true;
+        properties.getCallback().setPoolSize(1);
+        properties.getCallback().setQueueCapacity(1);
+        dispatcher = newDispatcher();
+
+        assertTrue(dispatcher.dispatch(url, result("id-1")));
+        assertFalse(dispatcher.dispatch(url, result("id-2")));
+
+        assertEquals(1, count("dropped"));
+        release.countDown();
+        awaitCount("delivered", 1);
+    }
+
+    @Test
+    void testValidate_rejectsNonHttpUrls() {
+        dispatcher = newDispatcher();
+
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ApplicationException.class, () -> dispatcher.validate("ftp://host/x")).getHttpStatus());
+        assertThrows(ApplicationException.class, () -> dispatcher.validate("/relative"));
+        assertThrows(ApplicationException.class, () -> dispatcher.validate("http://bad host"));
+        assertDoesNotThrow(() -> dispatcher.validate("https://8.8.8.8/hook?x=1"));
+    }
+
+    @Test
+    void testValidate_rejectsInternalAddresses() {
+        properties.getCallback().setAllowPrivateAddresses(false);
+        dispatcher = newDispatcher();
+
+        for (String callbackUrl : List.of("http://127.0.0.1/hook", "http://localhost:8080/hook", "http://169.254.169.254/latest/meta-data",
+                "http://10.0.0.1/hook", "http://192.168.1.1/hook", "http://100.64.0.1/hook", "http://0.0.0.0/hook",
+                "http://[::1]/hook", "http://[fd00::1]/hook", "http://[::ffff:127.0.0.1]/hook")) {
+            assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ApplicationException.class, () -> dispatcher.validate(callbackUrl)).getHttpStatus(), callbackUrl);
+        }
+        assertDoesNotThrow(() -> dispatcher.validate("https://8.8.8.8/hook"));
+    }
+
+    @Test
+    void testValidate_allowedHostsOnly() {
+        properties.getCallback().setAllowPrivateAddresses(false);
+        properties.getCallback().setAllowedHosts(List.of("127.0.0.1"));
+        dispatcher = newDispatcher();
+
+        assertDoesNotThrow(() -> dispatcher.validate(url));
+        assertThrows(ApplicationException.class, () -> dispatcher.validate("https://8.8.8.8/hook"));
+    }
+
+    @Test
+    void testDispatch_hostNoLongerAllowed_failsWithoutPosting() throws InterruptedException {
+        properties.getCallback().setAllowPrivateAddresses(false);
+        dispatcher = newDispatcher();
+
+        assertTrue(dispatcher.dispatch(url, result("id-1")));
+
+        awaitCount("failed", 1);
+        assertNull(received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testBackoff_doublesUpToMax() {
+        dispatcher = newDispatcher();
+
+        assertEquals(10, dispatcher.backoffMs(1));
+        assertEquals(20, dispatcher.backoffMs(2));
+        assertEquals(40, dispatcher.backoffMs(3));
+        assertEquals(40, dispatcher.backoffMs(60));
+    }
+
+    private CallbackDispatcher newDispatcher() {
+        return new CallbackDispatcher(properties, new ScriptMetrics(meterRegistry), mapper);
+    }
+
+    private static ScriptResult result(String id) {
+        ScriptResult result = new ScriptResult(id);
+        result.setStatus(Status.COMPLETED);
+        result.setOutput("ok\n");
+        return result;
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.find("script.callbacks").tag("outcome", outcome).counters().stream()
+                .mapToDouble(counter -> counter.count()).sum();
+    }
+
+    private void awaitCount(String outcome, double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (count(outcome) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, count(outcome));
+    }
+
+    private record Request(String attempt, String scriptId, byte[] body) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.graalvm.polyglot.Engine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContextPoolTest {
+
+    private static Engine engine;
+
+    @BeforeAll
+    static void createEngine() {
+        engine = Engine.newBuilder("js").option("engine.WarnInterpreterOnly", "false").build();
+    }
+
+    @AfterAll
+    static void closeEngine() {
+        engine.close(true);
+    }
+
+    @Test
+    public void testBorrowAndRefill_neverBuildMoreThanSize() throws Exception {
+        ScriptProperties properties = new ScriptProperties();
+        properties.getContextPool().setSize(3);
+        properties.getContextPool().setMinIdle(3);
+        ContextPool pool = new ContextPool(engine, properties, new ScriptMetrics(new SimpleMeterRegistry()));
+        pool.warmUp();
+        AtomicInteger total = (AtomicInteger) ReflectionTestUtils.getField(pool, "total");
+        List<Integer> seen = new CopyOnWriteArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            workers.add(executor.submit(() -> {
+                for (int run = 0; run < 20; run++) {
+                    PooledContext context = pool.borrow();
+                    seen.add(total.get());
+                    //maxUses is 1, so every release discards and refills
+                    pool.release(context);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        pool.close();
+
+        assertTrue(seen.stream().allMatch(count -> count <= 3), "total went over size: " + seen);
+    }
+
+    @Test
+    public void testBorrow_engineClosed_givesSlotBack() {
+        Engine closedEngine = Engine.newBuilder("js").option("engine.WarnInterpreterOnly", "false").build();
+        closedEngine.close();
+        ScriptProperties properties = new ScriptProperties();
+        properties.getContextPool().setSize(1);
+        properties.getContextPool().setMinIdle(1);
+        ContextPool pool = new ContextPool(closedEngine, properties, new ScriptMetrics(new SimpleMeterRegistry()));
+
+        //the refill fails the same way and is only logged
+        pool.warmUp();
+        assertThrows(IllegalStateException.class, pool::borrow);
+        assertThrows(IllegalStateException.class, pool::borrow);
+
+        assertEquals(0, ((AtomicInteger) ReflectionTestUtils.getField(pool, "total")).get());
+        assertEquals(0, pool.getStats().getInUse());
+        pool.close();
+    }
+}
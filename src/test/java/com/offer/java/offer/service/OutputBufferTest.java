@@ -0,0 +1,117 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutputBufferTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void testTail_keepsOnlyLastBytes() {
+        OutputBuffer buffer = buffer(ScriptProperties.OutputOverflow.TAIL, 8);
+
+        write(buffer, "0123456789abcdef");
+
+        assertEquals(16, buffer.size());
+        assertTrue(buffer.isTruncated());
+        assertEquals("89abcdef", text(buffer.tail(Integer.MAX_VALUE)));
+
+        OutputChunk chunk = buffer.read(0, 4);
+        assertTrue(chunk.isTruncated());
+        assertEquals(8, chunk.getOffset());
+        assertEquals("89ab", text(chunk));
+        assertEquals("cdef", text(buffer.read(chunk.getNextOffset(), 100)));
+    }
+
+    @Test
+    void testTail_underLimitIsNotTruncated() {
+        OutputBuffer buffer = buffer(ScriptProperties.OutputOverflow.TAIL, 8);
+
+        write(buffer, "0123");
+        write(buffer, "45");
+
+        assertFalse(buffer.isTruncated());
+        assertEquals("012345", text(buffer.tail(Integer.MAX_VALUE)));
+        assertEquals("2345", text(buffer.read(2, 100)));
+    }
+
+    @Test
+    void testTail_startsOnCharacterBoundary() {
+        OutputBuffer buffer = buffer(ScriptProperties.OutputOverflow.TAIL, 1024);
+
+        write(buffer, "abcé");
+
+        OutputChunk tail = buffer.tail(1);
+        assertEquals(5, tail.getOffset());
+        assertEquals("", text(tail));
+        assertTrue(tail.isTruncated());
+        assertEquals("é", text(buffer.tail(2)));
+        assertEquals("abcé", text(buffer.tail(100)));
+        assertFalse(buffer.tail(100).isTruncated());
+    }
+
+    @Test
+    void testRead_neverSplitsUtf8Character() {
+        OutputBuffer buffer = buffer(ScriptProperties.OutputOverflow.TAIL, 1024);
+
+        write(buffer, "aé");
+
+        OutputChunk chunk = buffer.read(0, 2);
+        assertEquals("a", text(chunk));
+        assertEquals("é", text(buffer.read(chunk.getNextOffset(), 2)));
+    }
+
+    @Test
+    void testSpill_movesOutputToFileAndReadsBack() throws Exception {
+        OutputBuffer buffer = buffer(ScriptProperties.OutputOverflow.SPILL, 8);
+
+        write(buffer, "0123456789");
+        write(buffer, "abcdefghij");
+
+        assertFalse(buffer.isTruncated());
+        assertEquals("0123456789abcdefghij", text(buffer.tail(Integer.MAX_VALUE)));
+        assertEquals("89abcdef", text(buffer.read(8, 8)));
+
+        buffer.close();
+        assertEquals(0, Files.list(spillDirectory).count());
+    }
+
+    @Test
+    void testSpill_dropsOutputPastMaxSpillBytes() {
+        OutputBuffer buffer = buffer(ScriptProperties.OutputOverflow.SPILL, 4);
+
+        write(buffer, "0123456789".repeat(4));
+
+        assertEquals(32, buffer.size());
+        assertTrue(buffer.isTruncated());
+        assertEquals("0123456789".repeat(4).substring(0, 32), text(buffer.tail(Integer.MAX_VALUE)));
+    }
+
+    private OutputBuffer buffer(ScriptProperties.OutputOverflow overflow, int memoryLimit) {
+        ScriptProperties.Output settings = new ScriptProperties.Output();
+        settings.setOverflow(overflow);
+        settings.setMemoryLimitBytes(memoryLimit);
+        settings.setSpillSegmentBytes(6);
+        settings.setMaxSpillBytes(32);
+        settings.setSpillDirectory(spillDirectory.toString());
+        return new OutputBuffer(new Object(), settings);
+    }
+
+    private void write(OutputBuffer buffer, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        buffer.write(bytes, 0, bytes.length);
+    }
+
+    private String text(OutputChunk chunk) {
+        return new String(chunk.getData(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.OutputChannel;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ReactiveOutputStreamerTest {
+
+    @Test
+    void testStream_emitsOutputWrittenAfterSubscribeAndCompletes() throws Exception {
+        ScriptOutput output = new ScriptOutput();
+        ReactiveOutputStreamer streamer = streamerFor(output, 4);
+        write(output, "ab");
+
+        Flux<String> flux = streamer.stream("id", OutputChannel.STDOUT, 0).map(ReactiveOutputStreamerTest::text);
+        Thread writer = new Thread(() -> {
+            sleep(50);
+            write(output, "cdefg");
+            output.complete();
+        });
+        writer.start();
+
+        List<String> chunks = flux.collectList().block(Duration.ofSeconds(5));
+        writer.join();
+
+        assertEquals("abcdefg", String.join("", chunks));
+        assertTrue(chunks.stream().allMatch(chunk -> chunk.length() <= 4));
+    }
+
+    @Test
+    void testStream_respectsDemandAndStopsListeningOnCancel() {
+        ScriptOutput output = new ScriptOutput();
+        ReactiveOutputStreamer streamer = streamerFor(output, 1);
+        write(output, "xyz");
+        AtomicInteger listeners = new AtomicInteger();
+        output.addListener(listeners::incrementAndGet);
+
+        List<String> firstTwo = streamer.stream("id", OutputChannel.STDOUT, 0).take(2).map(ReactiveOutputStreamerTest::text)
+                .collectList().block(Duration.ofSeconds(5));
+        write(output, "!");
+
+        assertEquals(List.of("x", "y"), firstTwo);
+        assertEquals(1, listeners.get());
+    }
+
+    @Test
+    void testStream_completedScriptFromOffset() {
+        ScriptOutput output = new ScriptOutput();
+        write(output, "first second");
+        output.complete();
+
+        String rest = String.join("", streamerFor(output, 64).stream("id", OutputChannel.STDOUT, 6)
+                .map(ReactiveOutputStreamerTest::text).collectList().block(Duration.ofSeconds(5)));
+
+        assertEquals("second", rest);
+    }
+
+    private static ReactiveOutputStreamer streamerFor(ScriptOutput output, int chunkSize) {
+        ScriptExecutionService service = mock(ScriptExecutionService.class);
+        when(service.getScriptOutput("id")).thenReturn(output);
+        ScriptProperties properties = new ScriptProperties();
+        properties.getStream().setChunkSize(chunkSize);
+        return new ReactiveOutputStreamer(service, properties);
+    }
+
+    private static void write(ScriptOutput output, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        output.getOut().write(bytes, 0, bytes.length);
+    }
+
+    private static String text(DataBuffer buffer) {
+        String text = buffer.toString(StandardCharsets.UTF_8);
+        DataBufferUtils.release(buffer);
+        return text;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
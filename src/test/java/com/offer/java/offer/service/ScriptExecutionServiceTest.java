@@ -1,45 +1,109 @@
 package com.offer.java.offer.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.config.ScriptProperties;
 import com.offer.java.offer.dto.*;
 import com.offer.java.offer.exception.ApplicationException;
 import com.offer.java.offer.exception.NotFoundException;
 import com.offer.java.offer.exception.ScriptRunException;
+import com.offer.java.offer.exception.ScriptSyntaxException;
+import com.offer.java.offer.exception.TooManyRequestsException;
 import com.offer.java.offer.mapper.MapperScript;
+import com.offer.java.offer.repository.FileScriptRepository;
+import com.offer.java.offer.repository.FileWorkQueue;
+import com.offer.java.offer.repository.InMemoryScriptRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.sun.net.httpserver.HttpServer;
+import org.graalvm.polyglot.Engine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
 
-import java.io.ByteArrayOutputStream;
-import java.util.Arrays;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Future;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.offer.java.offer.dto.Status.*;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class ScriptExecutionServiceTest {
-    @InjectMocks
+    private static Engine engine;
+
     private ScriptExecutionService scriptExecutionService;
+    private SourceCache sourceCache;
+    private ScriptValidator validator;
+    private ContextPool contextPool;
+    private BoundedScriptScheduler scheduler;
+    private ScriptIndex scriptIndex;
+    private SimpleMeterRegistry meterRegistry;
+    private ScriptMetrics metrics;
+    private ScriptWatchdog watchdog;
+    private InMemoryScriptRepository scriptRepository;
+    private ResultCache resultCache;
+    private CallbackDispatcher callbackDispatcher;
 
     private ConcurrentHashMap<String, ScriptInfo> scriptStorage;
-    private ConcurrentHashMap<String, ByteArrayOutputStream> outputStorage;
+    private ConcurrentHashMap<String, ScriptOutput> outputStorage;
 
     private static final String MESSAGE_SCRIPT_NOT_FOUND = "Script with this id not found";
     private static final String MESSAGE_SCRIPT_RUNNING = "The script is currently running and cannot be deleted";
     private static final String MESSAGE_SCRIPT_NOT_RUNNING = "Script with is not running";
+    private static final String MESSAGE_QUEUE_FULL = "Execution queue is full, try again later";
+
+    @BeforeAll
+    static void createEngine() {
+        engine = Engine.newBuilder("js").option("engine.WarnInterpreterOnly", "false").build();
+    }
+
+    @AfterAll
+    static void closeEngine() {
+        engine.close(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        validator.close();
+        contextPool.close();
+        scheduler.shutdown();
+        watchdog.shutdown();
+        callbackDispatcher.shutdown();
+    }
 
     @BeforeEach
     void setUp() {
+        ScriptProperties properties = new ScriptProperties();
+        //callback receivers in these tests listen on loopback
+        properties.getCallback().setAllowPrivateAddresses(true);
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new ScriptMetrics(meterRegistry);
+        sourceCache = new SourceCache(properties);
+        validator = new ScriptValidator(engine, sourceCache, properties);
+        contextPool = new ContextPool(engine, properties, metrics);
+        scheduler = new BoundedScriptScheduler(properties);
+        scriptIndex = new ScriptIndex();
+        watchdog = new ScriptWatchdog(properties);
+        scriptRepository = new InMemoryScriptRepository();
+        resultCache = new ResultCache(properties, metrics);
+        callbackDispatcher = new CallbackDispatcher(properties, metrics, new ObjectMapper());
+        scriptExecutionService = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
         outputStorage = new ConcurrentHashMap<>();
         scriptStorage = new ConcurrentHashMap<>();
-        ReflectionTestUtils.setField(scriptExecutionService, "scriptStorage", scriptStorage);
+        ReflectionTestUtils.setField(scriptRepository, "scripts", scriptStorage);
         ReflectionTestUtils.setField(scriptExecutionService, "outputStorage", outputStorage);
     }
 
@@ -57,6 +121,109 @@ public class ScriptExecutionServiceTest {
         assertEquals(COMPLETED, result.getStatus());
     }
 
+    @Test
+    public void testExecuteScript_RepeatedScriptReusesSource() {
+
+        String script = "console.log('lol')";
+
+        scriptExecutionService.executeScript(script, true);
+        ScriptResult result = scriptExecutionService.executeScript(script, true);
+
+        assertEquals(COMPLETED, result.getStatus());
+        assertEquals("lol\n", result.getOutput());
+        assertEquals(1, sourceCache.size());
+        assertEquals(1, sourceCache.getHits());
+    }
+
+    @Test
+    public void testExecuteScript_BlockingUsesContextPool() {
+
+        contextPool.warmUp();
+        scriptExecutionService.executeScript("console.log('lol')", true);
+        ScriptResult result = scriptExecutionService.executeScript("var x = 1; console.log('again')", true);
+
+        ContextPoolStats stats = scriptExecutionService.getContextPoolStats();
+        assertEquals(COMPLETED, result.getStatus());
+        assertEquals("again\n", result.getOutput());
+        assertTrue(stats.getHits() >= 1);
+        assertEquals(0, stats.getInUse());
+    }
+
+    @Test
+    public void testExecuteScript_OutputReadableByOffset() {
+
+        ScriptResult result = scriptExecutionService.executeScript("console.log('first'); console.error('oops'); console.log('second')", true);
+
+        ScriptOutput output = scriptExecutionService.getScriptOutput(result.getId());
+        assertTrue(output.isCompleted());
+        assertEquals("first\nsecond\n", text(output.getOut()));
+        assertEquals("second\n", new String(output.getOut().read(6, 100).getData()));
+        assertEquals("oops\n", text(output.getErr()));
+        assertEquals(COMPLETED, scriptExecutionService.getScriptStatus(result.getId()).getStatus());
+    }
+
+    @Test
+    public void testExecuteScript_ChattyScriptKeepsOnlyTail() {
+
+        ScriptProperties properties = new ScriptProperties();
+        properties.getOutput().setMemoryLimitBytes(18);
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+
+        ScriptResult result = service.executeScript("for (let i = 0; i < 1000; i++) { console.log('line ' + i); }", true);
+
+        assertEquals(COMPLETED, result.getStatus());
+        assertTrue(result.isOutputTruncated());
+        assertEquals("line 998\nline 999\n", result.getOutput());
+    }
+
+    @Test
+    public void testExecuteScript_ResultKeepsBoundedTailOfSpilledOutput(@TempDir Path directory) {
+
+        ScriptProperties properties = new ScriptProperties();
+        properties.getOutput().setOverflow(ScriptProperties.OutputOverflow.SPILL);
+        properties.getOutput().setMemoryLimitBytes(64);
+        properties.getOutput().setSpillDirectory(directory.toString());
+        properties.getOutput().setResultTailBytes(18);
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+
+        ScriptResult result = service.executeScript("for (let i = 0; i < 1000; i++) { console.log('line ' + i); }", true);
+
+        assertTrue(result.isOutputTruncated());
+        assertEquals("line 998\nline 999\n", result.getOutput());
+        assertEquals("line 998\nline 999\n", scriptRepository.findById(result.getId()).getResult().getOutput());
+        //the whole output stays readable through the buffer
+        assertEquals("line 0\nline 1\n", service.readOutput(result.getId(), OutputChannel.STDOUT, 0, 14).getData());
+    }
+
+    @Test
+    public void testReadOutput_returnsOnlyBytesAfterOffset() {
+
+        ScriptResult result = scriptExecutionService.executeScript("console.log('first'); console.log('second')", true);
+
+        ScriptOutputResponse firstRead = scriptExecutionService.readOutput(result.getId(), OutputChannel.STDOUT, 0, 6);
+        ScriptOutputResponse secondRead = scriptExecutionService.readOutput(result.getId(), OutputChannel.STDOUT, firstRead.getNextOffset(), 100);
+
+        assertEquals("first\n", firstRead.getData());
+        assertFalse(firstRead.isCompleted());
+        assertEquals("second\n", secondRead.getData());
+        assertEquals(13, secondRead.getNextOffset());
+        assertEquals(13, secondRead.getSize());
+        assertTrue(secondRead.isCompleted());
+    }
+
+    @Test
+    public void testGetAllScripts_ReturnsOutputSizeWithoutBody() {
+
+        ScriptResult result = scriptExecutionService.executeScript("console.log('lol')", true);
+
+        ScriptInfoShort scriptInfoShort = scriptExecutionService.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL, null, 10).getItems().get(0);
+        ScriptInfoResponse scriptInfoResponse = scriptExecutionService.getInfoScriptById(result.getId());
+
+        assertNull(scriptInfoShort.getResult().getOutput());
+        assertEquals(4, scriptInfoShort.getOutputSize());
+        assertEquals(4, scriptInfoResponse.getOutputOffset());
+    }
+
     @Test
     public void testExecuteScript_Error(){
 
@@ -94,10 +261,579 @@ public class ScriptExecutionServiceTest {
         assertEquals(QUEUE, result.getStatus());
     }
 
+    @Test
+    public void testExecuteScript_RecordsMetrics() {
+
+        scriptExecutionService.registerMetrics();
+
+        scriptExecutionService.executeScript("console.log('metrics')", true);
+        scriptExecutionService.executeScript("throw new Error('boom')", true);
+
+        assertEquals(2, meterRegistry.get("script.status").tag("status", "QUEUE").counter().count());
+        assertEquals(2, meterRegistry.get("script.status").tag("status", "PROCESSING").counter().count());
+        assertEquals(1, meterRegistry.get("script.status").tag("status", "COMPLETED").counter().count());
+        assertEquals(1, meterRegistry.get("script.status").tag("status", "ERROR").counter().count());
+        assertEquals(2, meterRegistry.get("script.execution").timer().count());
+        assertEquals(2, meterRegistry.get("script.queue.wait").timer().count());
+        assertTrue(meterRegistry.get("script.context.build").tag("source", "pool").timer().count() >= 1);
+        assertEquals(2, meterRegistry.get("script.retained").gauge().value());
+        assertTrue(meterRegistry.get("script.output.retained.bytes").gauge().value() >= "metrics\n".length());
+        assertEquals(0, meterRegistry.get("script.executor.queued").gauge().value());
+    }
+
+    @Test
+    public void testExecuteScript_TracesPhases() {
+
+        ScriptResult result = scriptExecutionService.executeScript("let s = 0; for (let i = 0; i < 100000; i++) { s += i; } console.log(s)", true);
+        scriptExecutionService.executeScript("throw new Error('boom')", true);
+
+        ExecutionTrace trace = scriptExecutionService.getInfoScriptById(result.getId()).getTrace();
+        assertNotNull(trace);
+        assertTrue(trace.isPooledContext());
+        assertTrue(trace.getEvalUs() > 0);
+        assertTrue(trace.getQueueWaitUs() >= 0 && trace.getContextBuildUs() >= 0 && trace.getMappingUs() >= 0);
+
+        Map<ExecutionPhase, PhaseStats> stats = scriptExecutionService.getPhaseStats();
+        assertEquals(EnumSet.allOf(ExecutionPhase.class), stats.keySet());
+        for (PhaseStats phase : stats.values()) {
+            assertEquals(2, phase.getCount());
+            assertTrue(phase.getP50Ms() <= phase.getP99Ms());
+        }
+    }
+
+    @Test
+    public void testExecuteScript_SyntaxError_rejectedBeforeQueueing() {
+
+        ScriptSyntaxException thrown = assertThrows(ScriptSyntaxException.class,
+                () -> scriptExecutionService.executeScript("console.log('ok');\nlet x = ;", false));
+
+        assertEquals(HttpStatus.BAD_REQUEST, thrown.getHttpStatus());
+        assertFalse(thrown.getValidation().isValid());
+        assertEquals(2, thrown.getValidation().getLine());
+        assertEquals(9, thrown.getValidation().getColumn());
+        assertTrue(scriptStorage.isEmpty());
+        assertEquals(0, scheduler.getQueueSize());
+        assertEquals(0, meterRegistry.get("script.status").tag("status", "QUEUE").counter().count());
+    }
+
+    @Test
+    public void testValidateScript_ValidSourceReusedByExecution() {
+
+        String script = "console.log('valid')";
+
+        assertTrue(scriptExecutionService.validateScript(script).isValid());
+        ScriptResult result = scriptExecutionService.executeScript(script, true);
+
+        assertEquals("valid\n", result.getOutput());
+        assertEquals(1, sourceCache.size());
+        assertEquals(1, sourceCache.getHits());
+        assertTrue(scriptStorage.containsKey(result.getId()));
+        assertEquals(1, scriptStorage.size());
+    }
+
+    @Test
+    public void testExecuteBatch_SyntaxError_AllOrNothing_rejectsWholeBatchWithIndex() {
+
+        ScriptSyntaxException thrown = assertThrows(ScriptSyntaxException.class,
+                () -> scriptExecutionService.executeBatch(List.of("console.log(1)", "console.log(", "console.log(3)"), false,
+                        Priority.NORMAL, null, BatchMode.ALL_OR_NOTHING));
+
+        assertEquals(1, thrown.getValidation().getIndex());
+        assertTrue(scriptStorage.isEmpty());
+    }
+
+    @Test
+    public void testExecuteBatch_SyntaxError_BestEffort_returnsItemAndQueuesRest() {
+
+        BatchResult batch = scriptExecutionService.executeBatch(List.of("console.log(1)", "console.log(", "console.log(3)"), true,
+                Priority.NORMAL, null, BatchMode.BEST_EFFORT);
+
+        assertEquals(2, batch.getAccepted());
+        assertEquals(1, batch.getRejected());
+        assertEquals(COMPLETED, batch.getResults().get(0).getStatus());
+        assertEquals("1\n", batch.getResults().get(0).getOutput());
+        assertEquals(ERROR, batch.getResults().get(1).getStatus());
+        assertEquals(1, batch.getResults().get(1).getValidation().getIndex());
+        assertFalse(batch.getResults().get(1).getValidation().isValid());
+        assertEquals(COMPLETED, batch.getResults().get(2).getStatus());
+        assertEquals("3\n", batch.getResults().get(2).getOutput());
+        assertEquals(Set.of(batch.getBatchId() + "-0", batch.getBatchId() + "-2"), scriptStorage.keySet());
+    }
+
+    @Test
+    public void testExecuteScript_QueueFull_countsRejected() {
+
+        ScriptScheduler fullScheduler = mock(ScriptScheduler.class);
+        when(fullScheduler.submit(anyString(), eq(Priority.NORMAL), any())).thenThrow(new RejectedExecutionException());
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, fullScheduler, new ScriptProperties(), scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+
+        assertThrows(TooManyRequestsException.class, () -> service.executeScript("console.log('lol')", false));
+
+        assertEquals(1, meterRegistry.get("script.rejected").counter().count());
+    }
+
+    @Test
+    public void testExecuteScript_QueueFull_throwsTooManyRequests() {
+
+        ScriptScheduler fullScheduler = mock(ScriptScheduler.class);
+        when(fullScheduler.submit(anyString(), eq(Priority.NORMAL), any())).thenThrow(new RejectedExecutionException());
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, fullScheduler, new ScriptProperties(), scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+
+        TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class,
+                () -> service.executeScript("console.log('lol')", false));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, thrown.getHttpStatus());
+        assertEquals(MESSAGE_QUEUE_FULL, thrown.getScriptResponse().getMessage());
+        assertTrue(scriptStorage.isEmpty());
+    }
+
+    @Test
+    public void testExecuteBatch_Blocking_returnsResultsInOrder() {
+
+        List<String> scripts = List.of("console.log('a')", "console.log('b')", "throw new Error('c')");
+
+        BatchResult batch = scriptExecutionService.executeBatch(scripts, true, Priority.NORMAL, null, BatchMode.ALL_OR_NOTHING);
+
+        assertEquals(3, batch.getAccepted());
+        assertEquals(0, batch.getRejected());
+        assertEquals(batch.getBatchId() + "-0", batch.getResults().get(0).getId());
+        assertEquals("a\n", batch.getResults().get(0).getOutput());
+        assertEquals("b\n", batch.getResults().get(1).getOutput());
+        assertEquals(ERROR, batch.getResults().get(2).getStatus());
+        assertEquals(COMPLETED, scriptStorage.get(batch.getBatchId() + "-1").getResult().getStatus());
+    }
+
+    @Test
+    public void testExecuteBatch_NonBlocking_returnsIds() throws InterruptedException {
+
+        BatchResult batch = scriptExecutionService.executeBatch(List.of("console.log(1)", "console.log(2)"), false, Priority.NORMAL, null,
+                BatchMode.BEST_EFFORT);
+
+        assertEquals(2, batch.getResults().size());
+        for (ScriptResult result : batch.getResults()) {
+            ScriptOutput output = scriptExecutionService.getScriptOutput(result.getId());
+            output.awaitOutput(Long.MAX_VALUE, Long.MAX_VALUE, 5000);
+            assertEquals(COMPLETED, scriptExecutionService.getScriptStatus(result.getId()).getStatus());
+        }
+    }
+
+    @Test
+    public void testExecuteBatch_AllOrNothing_rejectsWholeBatch() {
+
+        ScriptScheduler fullScheduler = mock(ScriptScheduler.class);
+        when(fullScheduler.submitAll(anyList(), eq(true))).thenReturn(0);
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, fullScheduler, new ScriptProperties(), scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+
+        TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class,
+                () -> service.executeBatch(List.of("1", "2"), false, Priority.NORMAL, null, BatchMode.ALL_OR_NOTHING));
+
+        assertEquals(MESSAGE_QUEUE_FULL, thrown.getScriptResponse().getMessage());
+        assertTrue(scriptStorage.isEmpty());
+        assertEquals(2, meterRegistry.get("script.rejected").counter().count());
+    }
+
+    @Test
+    public void testExecuteBatch_BestEffort_returnsRejectedItems() {
+
+        ScriptScheduler partialScheduler = mock(ScriptScheduler.class);
+        when(partialScheduler.submitAll(anyList(), eq(false))).thenReturn(1);
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, partialScheduler, new ScriptProperties(), scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+
+        BatchResult batch = service.executeBatch(List.of("1", "2", "3"), false, Priority.NORMAL, null, BatchMode.BEST_EFFORT);
+
+        assertEquals(1, batch.getAccepted());
+        assertEquals(2, batch.getRejected());
+        assertEquals(QUEUE, batch.getResults().get(0).getStatus());
+        assertEquals(ERROR, batch.getResults().get(2).getStatus());
+        assertEquals(MESSAGE_QUEUE_FULL, batch.getResults().get(2).getError());
+        assertEquals(Set.of(batch.getBatchId() + "-0"), scriptStorage.keySet());
+    }
+
+    @Test
+    public void testExecuteBatch_EmptyOrTooLarge_throwsBadRequest() {
+
+        ScriptProperties properties = new ScriptProperties();
+        properties.getBatch().setMaxSize(2);
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+
+        ApplicationException empty = assertThrows(ApplicationException.class,
+                () -> service.executeBatch(List.of(), false, Priority.NORMAL, null, BatchMode.BEST_EFFORT));
+        ApplicationException tooLarge = assertThrows(ApplicationException.class,
+                () -> service.executeBatch(List.of("1", "2", "3"), false, Priority.NORMAL, null, BatchMode.BEST_EFFORT));
+
+        assertEquals(HttpStatus.BAD_REQUEST, empty.getHttpStatus());
+        assertEquals(HttpStatus.BAD_REQUEST, tooLarge.getHttpStatus());
+        assertTrue(scriptStorage.isEmpty());
+    }
+
+    @Test
+    public void testExecuteBatch_LargerThanQueueCapacity_throwsBadRequest() {
+
+        ScriptProperties properties = new ScriptProperties();
+        properties.getExecutor().setQueueCapacity(2);
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+
+        ApplicationException tooLarge = assertThrows(ApplicationException.class,
+                () -> service.executeBatch(List.of("1", "2", "3"), false, Priority.NORMAL, null, BatchMode.ALL_OR_NOTHING));
+
+        assertEquals(HttpStatus.BAD_REQUEST, tooLarge.getHttpStatus());
+        assertEquals("A batch needs between 1 and 2 scripts", tooLarge.getScriptResponse().getMessage());
+        assertTrue(scriptStorage.isEmpty());
+    }
+
+    @Test
+    public void testExecuteTemplate_BindsArgumentsAndReusesSource() {
+
+        TemplateRegistry templates = new TemplateRegistry(validator, new ScriptProperties());
+        templates.register("greet", "console.log('hi ' + args.name + ' ' + args.tags.length)");
+
+        ScriptResult first = scriptExecutionService.executeTemplate(templates.get("greet"), "{\"name\":\"ann\",\"tags\":[1,2]}", true, Priority.NORMAL, null);
+        ScriptResult second = scriptExecutionService.executeTemplate(templates.get("greet"), "{\"name\":\"bob\",\"tags\":[]}", true, Priority.NORMAL, null);
+
+        assertEquals("hi ann 2\n", first.getOutput());
+        assertEquals("hi bob 0\n", second.getOutput());
+        assertEquals(0, sourceCache.size());
+        ScriptInfoResponse info = scriptExecutionService.getInfoScriptById(second.getId());
+        assertEquals("greet", info.getTemplate());
+        assertEquals("{\"name\":\"bob\",\"tags\":[]}", info.getArguments());
+    }
+
+    @Test
+    public void testExecuteTemplate_ArgumentsDoNotLeakIntoReusedContext() {
+
+        ScriptProperties properties = new ScriptProperties();
+        properties.getContextPool().setSize(1);
+        properties.getContextPool().setMaxUses(10);
+        ContextPool singlePool = new ContextPool(engine, properties, metrics);
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, singlePool, scheduler, properties, scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+        TemplateRegistry templates = new TemplateRegistry(validator, properties);
+        templates.register("echo", "console.log(args.value)");
+
+        service.executeTemplate(templates.get("echo"), "{\"value\":42}", true, Priority.NORMAL, null);
+        ScriptResult plain = service.executeScript("console.log(typeof args)", true);
+        ScriptResult noArguments = service.executeTemplate(templates.get("echo"), null, true, Priority.NORMAL, null);
+        singlePool.close();
+
+        assertEquals("undefined\n", plain.getOutput());
+        assertEquals(COMPLETED, noArguments.getStatus());
+        assertEquals("undefined\n", noArguments.getOutput());
+    }
+
+    @Test
+    public void testExecuteTemplate_WithStatementLimitRunsInOwnContext() {
+
+        TemplateRegistry templates = new TemplateRegistry(validator, new ScriptProperties());
+        templates.register("loop", "for (let i = 0; i < args.n; i++) {} console.log('done')");
+
+        ScriptResult small = scriptExecutionService.executeTemplate(templates.get("loop"), "{\"n\":10}", true, Priority.NORMAL,
+                ScriptLimits.builder().statementLimit(1000L).build());
+        ScriptResult large = scriptExecutionService.executeTemplate(templates.get("loop"), "{\"n\":100000}", true, Priority.NORMAL,
+                ScriptLimits.builder().statementLimit(1000L).build());
+
+        assertEquals(COMPLETED, small.getStatus());
+        assertEquals(LIMIT_EXCEEDED, large.getStatus());
+    }
+
+    @Test
+    public void testExecuteScript_CallbackReceivesFinalResult() throws Exception {
+
+        BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hook", exchange -> {
+            received.add(exchange.getRequestBody().readAllBytes());
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String callbackUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/hook";
+            ScriptResult submitted = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                    .script("console.log('hook')")
+                    .callbackUrl(callbackUrl)
+                    .build());
+
+            byte[] body = received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(body);
+            ScriptResult posted = new ObjectMapper().readValue(body, ScriptResult.class);
+            assertEquals(submitted.getId(), posted.getId());
+            assertEquals(COMPLETED, posted.getStatus());
+            assertEquals("hook\n", posted.getOutput());
+            assertEquals(callbackUrl, scriptExecutionService.getInfoScriptById(submitted.getId()).getCallbackUrl());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testExecuteScript_InvalidCallbackUrl_throwsBadRequest() {
+
+        ApplicationException thrown = assertThrows(ApplicationException.class,
+                () -> scriptExecutionService.executeScript(ScriptSubmission.builder()
+                        .script("console.log(1)")
+                        .callbackUrl("file:///etc/passwd")
+                        .build()));
+
+        assertEquals(HttpStatus.BAD_REQUEST, thrown.getHttpStatus());
+        assertTrue(scriptStorage.isEmpty());
+    }
+
+    @Test
+    public void testExecuteScript_TimeoutStopsRunawayScript() throws InterruptedException {
+
+        ScriptLimits limits = ScriptLimits.builder().timeoutMs(200L).build();
+        ScriptResult submitted = scriptExecutionService.executeScript(ScriptSubmission.builder().script("while (true) {}").limits(limits).build());
+
+        ScriptOutput output = scriptExecutionService.getScriptOutput(submitted.getId());
+        output.awaitOutput(Long.MAX_VALUE, Long.MAX_VALUE, 5000);
+
+        ScriptInfoResponse info = scriptExecutionService.getInfoScriptById(submitted.getId());
+        assertEquals(LIMIT_EXCEEDED, info.getResult().getStatus());
+        assertEquals(ResourceLimit.TIMEOUT, info.getExceededLimit());
+        assertEquals("Timeout of 200 ms exceeded", info.getResult().getError());
+        assertTrue(info.getUsage().getWallTimeMs() >= 200);
+
+        assertEquals(COMPLETED, scriptExecutionService.executeScript("console.log('next')", true).getStatus());
+    }
+
+    @Test
+    public void testExecuteScript_StatementLimit() {
+
+        ScriptLimits limits = ScriptLimits.builder().statementLimit(1000L).build();
+        ScriptResult result = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("while (true) {}")
+                .blocking(true)
+                .limits(limits)
+                .build());
+
+        assertEquals(LIMIT_EXCEEDED, result.getStatus());
+        assertEquals(ResourceLimit.STATEMENTS, scriptExecutionService.getInfoScriptById(result.getId()).getExceededLimit());
+    }
+
+    @Test
+    public void testExecuteScript_CpuTimeLimit() {
+
+        ScriptLimits limits = ScriptLimits.builder().cpuTimeMs(100L).build();
+        ScriptResult result = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("while (true) {}")
+                .blocking(true)
+                .limits(limits)
+                .build());
+
+        assertEquals(LIMIT_EXCEEDED, result.getStatus());
+        ScriptInfoResponse info = scriptExecutionService.getInfoScriptById(result.getId());
+        assertEquals(ResourceLimit.CPU_TIME, info.getExceededLimit());
+        assertTrue(info.getUsage().getCpuTimeMs() >= 100);
+    }
+
+    @Test
+    public void testExecuteScript_HeapLimit() {
+
+        ScriptLimits limits = ScriptLimits.builder().heapBytes(16L * 1024 * 1024).build();
+        ScriptResult result = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("let items = []; while (true) { items.push({ value: items.length }); }")
+                .blocking(true)
+                .limits(limits)
+                .build());
+
+        assertEquals(LIMIT_EXCEEDED, result.getStatus());
+        ScriptInfoResponse info = scriptExecutionService.getInfoScriptById(result.getId());
+        assertEquals(ResourceLimit.HEAP, info.getExceededLimit());
+        assertTrue(info.getUsage().getAllocatedBytes() > 16L * 1024 * 1024);
+    }
+
+    @Test
+    public void testExecuteScript_RecordsUsageAndDefaultLimits() {
+
+        ScriptProperties properties = new ScriptProperties();
+        properties.getLimits().setTimeoutMs(5000);
+        ScriptWatchdog limitedWatchdog = new ScriptWatchdog(properties);
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, scriptIndex, metrics, limitedWatchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+
+        ScriptResult result = service.executeScript("console.log('lol')", true);
+
+        ScriptInfoResponse info = service.getInfoScriptById(result.getId());
+        assertEquals(COMPLETED, info.getResult().getStatus());
+        assertEquals(5000L, info.getLimits().getTimeoutMs());
+        assertNull(info.getLimits().getCpuTimeMs());
+        assertNull(info.getExceededLimit());
+        assertNotNull(info.getUsage());
+        assertNotNull(info.getUsage().getAllocatedBytes());
+        limitedWatchdog.shutdown();
+    }
+
+    @Test
+    public void testRestoreScripts_FromFileRepository(@TempDir Path directory) throws InterruptedException {
+
+        ScriptProperties properties = new ScriptProperties();
+        properties.getRepository().setDirectory(directory.toString());
+        FileScriptRepository fileRepository = new FileScriptRepository(properties);
+        fileRepository.open();
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, new ScriptIndex(), metrics, watchdog, fileRepository, resultCache, callbackDispatcher, Optional.empty());
+        String id = service.executeScript("console.log('kept')", true).getId();
+        ScriptInfo cutOff = new ScriptInfo("cut-off", "while (true) {}");
+        cutOff.transition(QUEUE, PROCESSING);
+        fileRepository.save(cutOff);
+        fileRepository.close();
+
+        FileScriptRepository reopened = new FileScriptRepository(properties);
+        reopened.open();
+        ScriptExecutionService restarted = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, new ScriptIndex(), metrics, watchdog, reopened, resultCache, callbackDispatcher, Optional.empty());
+        restarted.restoreScripts();
+
+        assertEquals("kept\n", restarted.getInfoScriptById(id).getResult().getOutput());
+        assertEquals("kept\n", restarted.readOutput(id, OutputChannel.STDOUT, 0, 100).getData());
+        assertEquals(ERROR, restarted.getScriptStatus("cut-off").getStatus());
+        assertEquals(2, restarted.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL, null, 10).getItems().size());
+        reopened.close();
+    }
+
+    @Test
+    public void testExecuteScript_CacheReturnsStoredResult() {
+
+        ScriptResult first = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("console.log('pure')")
+                .blocking(true)
+                .cache(true)
+                .build());
+        ScriptResult second = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("console.log('pure')")
+                .blocking(true)
+                .cache(true)
+                .build());
+
+        assertEquals(COMPLETED, second.getStatus());
+        assertEquals("pure\n", second.getOutput());
+        assertEquals(first.getId(), second.getId());
+        assertFalse(first.isCached());
+        assertTrue(second.isCached());
+        assertEquals(1, scriptStorage.size());
+        assertEquals(1, meterRegistry.get("script.cache.lookups").tag("result", "hit").counter().count());
+        assertEquals(1, meterRegistry.get("script.cache.lookups").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    public void testExecuteScript_CacheKeysOnScriptAndLimits() {
+
+        scriptExecutionService.executeScript(ScriptSubmission.builder().script("console.log('pure')").blocking(true).cache(true).build());
+        ScriptResult otherLimits = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("console.log('pure')")
+                .blocking(true)
+                .limits(ScriptLimits.builder().timeoutMs(1000L).build())
+                .cache(true)
+                .build());
+        ScriptResult uncached = scriptExecutionService.executeScript("console.log('pure')", true);
+
+        assertFalse(otherLimits.isCached());
+        assertFalse(uncached.isCached());
+        assertEquals(3, scriptStorage.size());
+    }
+
+    @Test
+    public void testExecuteScript_CacheDoesNotKeepFailures() {
+
+        scriptExecutionService.executeScript(ScriptSubmission.builder().script("throw new Error('flaky')").blocking(true).cache(true).build());
+        ScriptResult retried = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("throw new Error('flaky')")
+                .blocking(true)
+                .cache(true)
+                .build());
+
+        assertFalse(retried.isCached());
+        assertEquals(ERROR, retried.getStatus());
+        assertEquals(0, resultCache.size());
+    }
+
+    @Test
+    public void testExecuteScript_CacheExpiresAfterTtl() throws InterruptedException {
+
+        ScriptProperties properties = new ScriptProperties();
+        properties.getResultCache().setTtlMs(20);
+        ResultCache shortCache = new ResultCache(properties, metrics);
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, scriptIndex, metrics, watchdog, scriptRepository, shortCache, callbackDispatcher, Optional.empty());
+
+        service.executeScript(ScriptSubmission.builder().script("console.log('pure')").blocking(true).cache(true).build());
+        Thread.sleep(50);
+        ScriptResult expired = service.executeScript(ScriptSubmission.builder().script("console.log('pure')").blocking(true).cache(true).build());
+
+        assertFalse(expired.isCached());
+        assertEquals(2, scriptStorage.size());
+    }
+
+    @Test
+    public void testExecuteScript_ConcurrentIdenticalSubmitsShareOneRun() throws Exception {
+
+        String script = "let total = 0; for (let i = 0; i < 2e6; i++) { total += i; } console.log(total);";
+        int clients = 8;
+        ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ScriptResult>> results = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            results.add(clientPool.submit(() -> {
+                start.await();
+                return scriptExecutionService.executeScript(ScriptSubmission.builder().script(script).blocking(true).cache(true).build());
+            }));
+        }
+        start.countDown();
+
+        Set<String> ids = new HashSet<>();
+        for (Future<ScriptResult> result : results) {
+            assertEquals(COMPLETED, result.get().getStatus());
+            assertEquals("1999999000000\n", result.get().getOutput());
+            ids.add(result.get().getId());
+        }
+        clientPool.shutdown();
+
+        assertEquals(1, ids.size());
+        assertEquals(1, scriptStorage.size());
+        assertEquals(1, meterRegistry.get("script.status").tag("status", "PROCESSING").counter().count());
+    }
+
+    @Test
+    public void testExecuteScript_NonBlockingCacheHitWhileRunningReturnsSharedId() {
+
+        ScriptResult owner = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("while (true) {}")
+                .limits(ScriptLimits.builder().timeoutMs(300L).build())
+                .cache(true)
+                .build());
+        ScriptResult shared = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("while (true) {}")
+                .limits(ScriptLimits.builder().timeoutMs(300L).build())
+                .cache(true)
+                .build());
+
+        assertEquals(owner.getId(), shared.getId());
+        assertTrue(shared.isCached());
+        assertNotEquals(COMPLETED, shared.getStatus());
+    }
+
+    @Test
+    public void testExecuteScript_BlockingCacheHitWaitsAtMostWaitMs() {
+        ScriptProperties properties = (ScriptProperties) ReflectionTestUtils.getField(scriptExecutionService, "properties");
+        properties.getResultCache().setWaitMs(50);
+
+        ScriptResult owner = scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("while (true) {}")
+                .limits(ScriptLimits.builder().timeoutMs(5000L).build())
+                .cache(true)
+                .build());
+        ScriptResult shared = assertTimeoutPreemptively(Duration.ofSeconds(3), () -> scriptExecutionService.executeScript(ScriptSubmission.builder()
+                .script("while (true) {}")
+                .blocking(true)
+                .limits(ScriptLimits.builder().timeoutMs(5000L).build())
+                .cache(true)
+                .build()));
+
+        assertEquals(owner.getId(), shared.getId());
+        assertTrue(shared.isCached());
+        assertNotEquals(COMPLETED, shared.getStatus());
+        scriptExecutionService.stopScript(owner.getId());
+    }
+
     @Test
     public void testGetAllScripts_EmptyStorage() {
 
-        List<ScriptInfoShort> result = scriptExecutionService.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL);
+        List<ScriptInfoShort> result = scriptExecutionService.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL, null, 10).getItems();
 
         assertNotNull(result);
         assertEquals(0, result.size());
@@ -109,39 +845,101 @@ public class ScriptExecutionServiceTest {
         ScriptInfo script2 = new ScriptInfo("2", "script2");
         ScriptInfo script3 = new ScriptInfo("3", "script3");
 
-        ByteArrayOutputStream byteArrayOutputStream1 = new ByteArrayOutputStream();
-        ByteArrayOutputStream byteArrayOutputStream2 = new ByteArrayOutputStream();
-        ByteArrayOutputStream byteArrayOutputStream3 = new ByteArrayOutputStream();
+        ScriptOutput scriptOutput1 = new ScriptOutput();
+        ScriptOutput scriptOutput2 = new ScriptOutput();
+        ScriptOutput scriptOutput3 = new ScriptOutput();
 
         ScriptInfoShort shortInfo1 = new ScriptInfoShort();
         shortInfo1.setScript("script1");
         shortInfo1.setId("1");
         shortInfo1.setResult(new ScriptResultDTO());
-        shortInfo1.getResult().setOutput(byteArrayOutputStream1.toString());
         ScriptInfoShort shortInfo2 = new ScriptInfoShort();
         shortInfo2.setScript("script2");
         shortInfo2.setId("2");
         shortInfo2.setResult(new ScriptResultDTO());
-        shortInfo2.getResult().setOutput(byteArrayOutputStream2.toString());
         ScriptInfoShort shortInfo3 = new ScriptInfoShort();
         shortInfo3.setScript("script3");
         shortInfo3.setId("3");
         shortInfo3.setResult(new ScriptResultDTO());
-        shortInfo3.getResult().setOutput(byteArrayOutputStream3.toString());
 
-        outputStorage.put("1", byteArrayOutputStream1);
-        outputStorage.put("2", byteArrayOutputStream2);
-        outputStorage.put("3", byteArrayOutputStream3);
+        outputStorage.put("1", scriptOutput1);
+        outputStorage.put("2", scriptOutput2);
+        outputStorage.put("3", scriptOutput3);
 
         scriptStorage.put("1", script1);
         scriptStorage.put("2", script2);
         scriptStorage.put("3", script3);
+        scriptIndex.update("1", QUEUE, 0);
+        scriptIndex.update("2", QUEUE, 0);
+        scriptIndex.update("3", QUEUE, 0);
 
-        List<ScriptInfoShort> result = scriptExecutionService.getAllScripts(SortedByTime.UPPER, SortedByStatus.ALL);
+        List<ScriptInfoShort> result = scriptExecutionService.getAllScripts(SortedByTime.UPPER, SortedByStatus.ALL, null, 10).getItems();
 
         assertEquals(Arrays.asList(shortInfo1, shortInfo2, shortInfo3), result);
     }
 
+    @Test
+    void testGetAllScripts_PagesByCursorInDurationOrder() {
+        for (int i = 0; i < 5; i++) {
+            ScriptInfo scriptInfo = new ScriptInfo("id-" + i, "script");
+            scriptInfo.getResult().setStatus(i % 2 == 0 ? COMPLETED : ERROR);
+            scriptInfo.setDuration(100 - i);
+            scriptStorage.put(scriptInfo.getId(), scriptInfo);
+            scriptIndex.update(scriptInfo.getId(), scriptInfo.getResult().getStatus(), scriptInfo.getDuration());
+        }
+
+        ScriptPage firstPage = scriptExecutionService.getAllScripts(SortedByTime.UPPER, SortedByStatus.COMPLETED, null, 2);
+        ScriptPage secondPage = scriptExecutionService.getAllScripts(SortedByTime.UPPER, SortedByStatus.COMPLETED, firstPage.getNextCursor(), 2);
+
+        assertEquals(List.of("id-4", "id-2"), firstPage.getItems().stream().map(ScriptInfoShort::getId).toList());
+        assertNotNull(firstPage.getNextCursor());
+        assertEquals(List.of("id-0"), secondPage.getItems().stream().map(ScriptInfoShort::getId).toList());
+        assertNull(secondPage.getNextCursor());
+    }
+
+    @Test
+    void testGetAllScripts_NoLimitNoCursor_ReturnsWholeList() {
+        ScriptProperties properties = (ScriptProperties) ReflectionTestUtils.getField(scriptExecutionService, "properties");
+        properties.getListing().setDefaultLimit(2);
+        for (int i = 0; i < 5; i++) {
+            ScriptInfo scriptInfo = new ScriptInfo("id-" + i, "script");
+            scriptInfo.getResult().setStatus(COMPLETED);
+            scriptStorage.put(scriptInfo.getId(), scriptInfo);
+            scriptIndex.update(scriptInfo.getId(), COMPLETED, 0);
+        }
+
+        ScriptPage all = scriptExecutionService.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL, null, null);
+        ScriptPage firstPage = scriptExecutionService.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL, null, 1);
+        ScriptPage nextPage = scriptExecutionService.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.ALL, firstPage.getNextCursor(), null);
+
+        assertEquals(5, all.getItems().size());
+        assertNull(all.getNextCursor());
+        assertEquals(List.of("id-1", "id-2"), nextPage.getItems().stream().map(ScriptInfoShort::getId).toList());
+        assertNotNull(nextPage.getNextCursor());
+    }
+
+    @Test
+    void testGetAllScripts_IndexFollowsStatusChanges() {
+
+        ScriptResult result = scriptExecutionService.executeScript("console.log('lol')", true);
+
+        assertEquals(1, scriptExecutionService.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.COMPLETED, null, 10).getItems().size());
+        assertEquals(0, scriptExecutionService.getAllScripts(SortedByTime.DEFAULT, SortedByStatus.PROCESSING, null, 10).getItems().size());
+
+        scriptExecutionService.deleteScript(result.getId());
+
+        assertEquals(0, scriptIndex.size());
+    }
+
+    @Test
+    void testGetAllScripts_InvalidCursor() {
+
+        ApplicationException thrown = assertThrows(ApplicationException.class,
+                () -> scriptExecutionService.getAllScripts(SortedByTime.UPPER, SortedByStatus.ALL, "not-a-cursor", 10));
+
+        assertEquals(HttpStatus.BAD_REQUEST, thrown.getHttpStatus());
+    }
+
     @Test
     void testGetInfoScriptById_Success() {
         try (var mockedMapperScript = mockStatic(MapperScript.class)) {
@@ -151,7 +949,7 @@ public class ScriptExecutionServiceTest {
             ScriptInfoResponse expectedResponse = new ScriptInfoResponse();
 
             scriptStorage.put(scriptId, scriptInfo);
-            outputStorage.put("1", new ByteArrayOutputStream());
+            outputStorage.put("1", new ScriptOutput());
 
             mockedMapperScript.when(() -> MapperScript.mapToResponseScript(scriptInfo)).thenReturn(expectedResponse);
 
@@ -161,6 +959,20 @@ public class ScriptExecutionServiceTest {
         }
     }
 
+    @Test
+    void testGetInfoScriptById_ReadsOutputOnceWithoutChangingStoredResult() {
+        ScriptResult result = scriptExecutionService.executeScript("console.log('first')", true);
+        ScriptInfo scriptInfo = scriptStorage.get(result.getId());
+        byte[] later = "later\n".getBytes(StandardCharsets.UTF_8);
+        scriptExecutionService.getScriptOutput(result.getId()).getOut().write(later, 0, later.length);
+
+        ScriptInfoResponse response = scriptExecutionService.getInfoScriptById(result.getId());
+
+        assertEquals("first\nlater\n", response.getResult().getOutput());
+        assertEquals(12, response.getOutputOffset());
+        assertEquals("first\n", scriptInfo.getResult().getOutput());
+    }
+
     @Test
     void testGetInfoScriptById_NotFound() {
         String scriptId = "1";
@@ -209,12 +1021,9 @@ public class ScriptExecutionServiceTest {
         String script = "script";
         Future<?> futureMock = mock(Future.class);
 
-        ScriptResultDTO scriptResult = new ScriptResultDTO();
-        scriptResult.setStatus(PROCESSING);
-
         ScriptInfo scriptInfo = new ScriptInfo(scriptId, script);
         scriptInfo.setFuture(futureMock);
-        scriptInfo.setResult(scriptResult);
+        scriptInfo.transition(QUEUE, PROCESSING);
         scriptStorage.put(scriptId, scriptInfo);
 
         scriptExecutionService.stopScript(scriptId);
@@ -227,11 +1036,8 @@ public class ScriptExecutionServiceTest {
         String scriptId = "1";
         String script = "script";
 
-        ScriptResultDTO scriptResult = new ScriptResultDTO();
-        scriptResult.setStatus(PROCESSING);
-
         ScriptInfo scriptInfo = new ScriptInfo(scriptId, script);
-        scriptInfo.setResult(scriptResult);
+        scriptInfo.transition(QUEUE, PROCESSING);
 
         scriptStorage.put(scriptId, scriptInfo);
 
@@ -244,6 +1050,100 @@ public class ScriptExecutionServiceTest {
         assertEquals(HttpStatus.BAD_REQUEST, thrown.getHttpStatus());
     }
 
+    @Test
+    void testStopScript_TightLoop_stoppedAndThreadFreed() throws Exception {
+        //stop latency is measured by the opt-in StopLatencyLoadTest
+        for (int i = 0; i < 3; i++) {
+            String scriptId = scriptExecutionService.executeScript("while (true) {}", false).getId();
+            awaitStatus(scriptId, PROCESSING);
+
+            scriptExecutionService.stopScript(scriptId);
+
+            ScriptInfo scriptInfo = scriptStorage.get(scriptId);
+            assertEquals(STOPPED, scriptInfo.getResult().getStatus());
+            assertEquals("Script stopped", scriptInfo.getResult().getError());
+        }
+        //the stopped result is published just before the task returns its thread
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getActiveCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, scheduler.getActiveCount());
+        assertEquals(COMPLETED, scriptExecutionService.executeScript("console.log('next')", true).getStatus());
+    }
+
+    @Test
+    void testStopScript_BlockingRun_returnsStopped() throws Exception {
+        CompletableFuture<ScriptResult> blocking = CompletableFuture.supplyAsync(
+                () -> scriptExecutionService.executeScript("console.log('before'); while (true) {}", true));
+        String scriptId = awaitStatus(null, PROCESSING);
+        scriptExecutionService.getScriptOutput(scriptId).awaitOutput(0, 0, 5000);
+
+        scriptExecutionService.stopScript(scriptId);
+
+        ScriptResult result = blocking.get(5, TimeUnit.SECONDS);
+        assertEquals(STOPPED, result.getStatus());
+        assertEquals("before\n", text(scriptExecutionService.getScriptOutput(scriptId).getOut()));
+    }
+
+    private static String text(OutputBuffer buffer) {
+        return new String(buffer.tail(Integer.MAX_VALUE).getData(), StandardCharsets.UTF_8);
+    }
+
+    //Id of the script, or of the only stored one when null, once it reaches the status
+    private String awaitStatus(String scriptId, Status status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            ScriptInfo scriptInfo = scriptId != null ? scriptStorage.get(scriptId)
+                    : scriptStorage.values().stream().findFirst().orElse(null);
+            if (scriptInfo != null && scriptInfo.getResult().getStatus() == status) {
+                return scriptInfo.getId();
+            }
+            Thread.sleep(5);
+        }
+        throw new AssertionError("Script did not reach " + status);
+    }
+
+    @Test
+    public void testExecuteScript_SharedQueue_runOnOtherNodeAndReadableHere(@TempDir Path directory) throws Exception {
+        ScriptProperties properties = new ScriptProperties();
+        properties.getCluster().setQueue(ScriptProperties.WorkQueueType.FILE);
+        properties.getCluster().setDirectory(directory.toString());
+        FileWorkQueue submitterQueue = new FileWorkQueue(properties);
+        FileWorkQueue workerQueue = new FileWorkQueue(properties);
+        submitterQueue.open();
+        workerQueue.open();
+        ScriptExecutionService submitter = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, scriptIndex, metrics,
+                watchdog, new InMemoryScriptRepository(), resultCache, callbackDispatcher, Optional.of(submitterQueue));
+        ScriptExecutionService worker = new ScriptExecutionService(engine, sourceCache, validator, contextPool, scheduler, properties, new ScriptIndex(), metrics,
+                watchdog, new InMemoryScriptRepository(), resultCache, callbackDispatcher, Optional.of(workerQueue));
+        WorkQueueWorker queueWorker = new WorkQueueWorker(workerQueue, worker, scheduler, properties);
+        try {
+            String scriptId = submitter.executeScript("console.log('shared')", false).getId();
+            assertEquals(QUEUE, submitter.getInfoScriptById(scriptId).getResult().getStatus());
+
+            assertTrue(queueWorker.claimNext());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (submitter.getScriptStatus(scriptId).getStatus() != COMPLETED && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals("shared\n", submitter.getInfoScriptById(scriptId).getResult().getOutput());
+            assertEquals("shared\n", submitter.readOutput(scriptId, OutputChannel.STDOUT, 0, 1024).getData());
+            assertEquals(COMPLETED, worker.getInfoScriptById(scriptId).getResult().getStatus());
+            assertFalse(queueWorker.claimNext());
+            //counted once, by the node that ran it
+            assertEquals(1, meterRegistry.get("script.status").tag("status", "QUEUE").counter().count());
+
+            submitter.deleteScript(scriptId);
+            assertThrows(NotFoundException.class, () -> submitter.getInfoScriptById(scriptId));
+            assertNull(workerQueue.find(scriptId));
+        } finally {
+            submitterQueue.close();
+            workerQueue.close();
+        }
+    }
+
     @Test
     void testDeleteScript_ScriptNotFound() {
         String scriptId = "1";
@@ -274,11 +1174,8 @@ public class ScriptExecutionServiceTest {
         String scriptId = "1";
         String script = "script";
 
-        ScriptResultDTO scriptResult = new ScriptResultDTO();
-        scriptResult.setStatus(COMPLETED);
-
         ScriptInfo scriptInfo = new ScriptInfo(scriptId, script);
-        scriptInfo.setResult(scriptResult);
+        scriptInfo.finish(COMPLETED);
         scriptStorage.put(scriptId, scriptInfo);
 
         scriptExecutionService.deleteScript(scriptId);
@@ -291,11 +1188,8 @@ public class ScriptExecutionServiceTest {
         String scriptId = "1";
         String script = "script";
 
-        ScriptResultDTO scriptResult = new ScriptResultDTO();
-        scriptResult.setStatus(PROCESSING);
-
         ScriptInfo scriptInfo = new ScriptInfo(scriptId, script);
-        scriptInfo.setResult(scriptResult);
+        scriptInfo.transition(QUEUE, PROCESSING);
 
         scriptStorage.put(scriptId, scriptInfo);
 
@@ -308,5 +1202,110 @@ public class ScriptExecutionServiceTest {
         assertEquals(HttpStatus.BAD_REQUEST, thrown.getHttpStatus());
     }
 
+    @Test
+    void testDeleteScript_Queued_taskNeverRuns() throws Exception {
+        AtomicReference<Callable<ScriptResult>> queued = new AtomicReference<>();
+        ScriptExecutionService service = serviceWithQueue(queued);
+        String scriptId = service.executeScript("console.log('ran')", false).getId();
+        ScriptInfo scriptInfo = scriptStorage.get(scriptId);
+
+        service.deleteScript(scriptId);
+        ScriptResult result = queued.get().call();
+
+        verify(scriptInfo.getFuture()).cancel(false);
+        verify(scheduler(service)).remove(scriptInfo.getFuture());
+        assertEquals(STOPPED, result.getStatus());
+        assertEquals(STOPPED, scriptInfo.getCompletion().getNow(null).getStatus());
+        assertNull(scriptStorage.get(scriptId));
+        assertNull(outputStorage.get(scriptId));
+        assertEquals(0, meterRegistry.get("script.status").tag("status", "PROCESSING").counter().count());
+    }
+
+    @Test
+    void testDeleteScript_WhileTaskStoresResult_doesNotComeBack() throws Exception {
+        AtomicReference<Callable<ScriptResult>> queued = new AtomicReference<>();
+        ScriptExecutionService service = serviceWithQueue(queued);
+        String scriptId = service.executeScript("console.log('done')", false).getId();
+        //the delete lands after the task finished the script but before it stored it
+        scriptStorage.get(scriptId).addListener((info, from, to) -> {
+            if (to == COMPLETED) {
+                service.deleteScript(scriptId);
+            }
+        });
+
+        assertEquals(COMPLETED, queued.get().call().getStatus());
+
+        assertNull(scriptStorage.get(scriptId));
+        assertNull(outputStorage.get(scriptId));
+        assertThrows(NotFoundException.class, () -> service.deleteScript(scriptId));
+    }
+
+    @Test
+    void testScriptInfo_TransitionsAreCompareAndSet() {
+        ScriptInfo scriptInfo = new ScriptInfo("1", "script");
+        List<String> transitions = new ArrayList<>();
+        scriptInfo.addListener((info, from, to) -> transitions.add(from + "->" + to));
+
+        assertFalse(scriptInfo.markRemoved());
+        assertTrue(scriptInfo.transition(QUEUE, PROCESSING));
+        assertFalse(scriptInfo.transition(QUEUE, STOPPED));
+        assertTrue(scriptInfo.finish(COMPLETED));
+        assertFalse(scriptInfo.finish(STOPPED));
+        assertThrows(IllegalArgumentException.class, () -> scriptInfo.transition(COMPLETED, ERROR));
+        assertThrows(IllegalArgumentException.class, () -> scriptInfo.transition(PROCESSING, QUEUE));
+
+        assertEquals(COMPLETED, scriptInfo.getStatus());
+        assertEquals(COMPLETED, scriptInfo.getResult().getStatus());
+        assertEquals(List.of("QUEUE->PROCESSING", "PROCESSING->COMPLETED"), transitions);
+        assertTrue(scriptInfo.markRemoved());
+        assertFalse(scriptInfo.markRemoved());
+    }
+
+    @Test
+    void testScriptInfo_ConcurrentFinish_onlyOneWins() throws Exception {
+        for (int run = 0; run < 100; run++) {
+            ScriptInfo scriptInfo = new ScriptInfo("1", "script");
+            AtomicInteger notified = new AtomicInteger();
+            scriptInfo.addListener((info, from, to) -> notified.incrementAndGet());
+            CountDownLatch start = new CountDownLatch(1);
+            List<CompletableFuture<Boolean>> finishes = new ArrayList<>();
+            for (Status status : List.of(COMPLETED, STOPPED, ERROR, LIMIT_EXCEEDED)) {
+                finishes.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return scriptInfo.finish(status);
+                }));
+            }
+            start.countDown();
+
+            long won = 0;
+            for (CompletableFuture<Boolean> finish : finishes) {
+                won += finish.get(5, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(1, won);
+            assertEquals(1, notified.get());
+            assertEquals(scriptInfo.getStatus(), scriptInfo.getResult().getStatus());
+        }
+    }
+
+    private static ScriptScheduler scheduler(ScriptExecutionService service) {
+        return (ScriptScheduler) ReflectionTestUtils.getField(service, "scheduler");
+    }
+
+    //Service whose scheduler keeps the submitted task for the test to run
+    private ScriptExecutionService serviceWithQueue(AtomicReference<Callable<ScriptResult>> queued) {
+        ScriptScheduler queueingScheduler = mock(ScriptScheduler.class);
+        when(queueingScheduler.submit(anyString(), eq(Priority.NORMAL), any())).thenAnswer(invocation -> {
+            queued.set(invocation.getArgument(2));
+            return mock(Future.class);
+        });
+        ScriptExecutionService service = new ScriptExecutionService(engine, sourceCache, validator, contextPool, queueingScheduler, new ScriptProperties(), scriptIndex, metrics, watchdog, scriptRepository, resultCache, callbackDispatcher, Optional.empty());
+        ReflectionTestUtils.setField(service, "outputStorage", outputStorage);
+        return service;
+    }
+
 
 }
@@ -0,0 +1,31 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.dto.ExecutionPhase;
+import com.offer.java.offer.dto.ExecutionTrace;
+import com.offer.java.offer.dto.PhaseStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScriptMetricsTest {
+
+    @Test
+    public void testPhaseStats_contextBuildPercentilesOverPooledAndFreshRuns() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ScriptMetrics metrics = new ScriptMetrics(registry);
+        for (int i = 0; i < 9; i++) {
+            metrics.recordTrace(new ExecutionTrace(0, 1_000, true, 0, 0));
+        }
+        metrics.recordTrace(new ExecutionTrace(0, 500_000, false, 0, 0));
+
+        PhaseStats contextBuild = metrics.getPhaseStats().get(ExecutionPhase.CONTEXT_BUILD);
+
+        assertEquals(10, contextBuild.getCount());
+        //most builds came from the pool, so the median is a pooled one
+        assertTrue(contextBuild.getP50Ms() < 10, "p50 " + contextBuild.getP50Ms());
+        assertTrue(contextBuild.getMaxMs() >= 500);
+        assertEquals(9, registry.get("script.context.build").tag("source", "pool").timer().count());
+        assertEquals(1, registry.get("script.context.build").tag("source", "fresh").timer().count());
+    }
+}
@@ -0,0 +1,189 @@
+package com.offer.java.offer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptInfo;
+import com.offer.java.offer.dto.ScriptResult;
+import com.offer.java.offer.repository.InMemoryScriptRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.graalvm.polyglot.Engine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.offer.java.offer.dto.Status.PROCESSING;
+import static com.offer.java.offer.dto.Status.QUEUE;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScriptRetentionSweeperTest {
+
+    private static Engine engine;
+
+    private ScriptProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private ContextPool contextPool;
+    private BoundedScriptScheduler scheduler;
+    private ScriptWatchdog watchdog;
+    private InMemoryScriptRepository scriptRepository;
+    private ScriptExecutionService scriptExecutionService;
+    private ScriptRetentionSweeper sweeper;
+
+    @BeforeAll
+    static void createEngine() {
+        engine = Engine.newBuilder("js").option("engine.WarnInterpreterOnly", "false").build();
+    }
+
+    @AfterAll
+    static void closeEngine() {
+        engine.close(true);
+    }
+
+    @BeforeEach
+    void setUp() {
+        properties = new ScriptProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        ScriptMetrics metrics = new ScriptMetrics(meterRegistry);
+        contextPool = new ContextPool(engine, properties, metrics);
+        scheduler = new BoundedScriptScheduler(properties);
+        watchdog = new ScriptWatchdog(properties);
+        scriptRepository = new InMemoryScriptRepository();
+        SourceCache sourceCache = new SourceCache(properties);
+        scriptExecutionService = new ScriptExecutionService(engine, sourceCache, new ScriptValidator(engine, sourceCache, properties), contextPool, scheduler,
+                properties, new ScriptIndex(), metrics, watchdog, scriptRepository, new ResultCache(properties, metrics),
+                new CallbackDispatcher(properties, metrics, new ObjectMapper()), Optional.empty());
+        sweeper = new ScriptRetentionSweeper(scriptExecutionService, properties, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        contextPool.close();
+        scheduler.shutdown();
+        watchdog.shutdown();
+    }
+
+    @Test
+    public void testSweep_maxEntriesEvictsOldestFirst() {
+        List<String> ids = runScripts(5, "console.log('x')");
+        properties.getRetention().setMaxEntries(2);
+
+        sweeper.sweep();
+
+        assertEquals(2, scriptExecutionService.getStoredCount());
+        assertStored(ids.get(3), ids.get(4));
+        assertEquals(3, evictions(ScriptRetentionSweeper.REASON_ENTRIES));
+    }
+
+    @Test
+    public void testSweep_lruEvictsLeastRecentlyRead() {
+        List<String> ids = runScripts(3, "console.log('x')");
+        storage().get(ids.get(0)).setLastAccessTime(3000);
+        storage().get(ids.get(1)).setLastAccessTime(1000);
+        storage().get(ids.get(2)).setLastAccessTime(2000);
+        properties.getRetention().setOrder(ScriptProperties.RetentionOrder.LRU);
+        properties.getRetention().setMaxEntries(2);
+
+        sweeper.sweep();
+
+        assertStored(ids.get(0), ids.get(2));
+    }
+
+    @Test
+    public void testSweep_readMovesScriptToFrontForLru() {
+        List<String> ids = runScripts(2, "console.log('x')");
+        storage().get(ids.get(0)).setLastAccessTime(1000);
+        storage().get(ids.get(1)).setLastAccessTime(2000);
+        properties.getRetention().setOrder(ScriptProperties.RetentionOrder.LRU);
+        properties.getRetention().setMaxEntries(1);
+
+        scriptExecutionService.getInfoScriptById(ids.get(0));
+        sweeper.sweep();
+
+        assertStored(ids.get(0));
+    }
+
+    @Test
+    public void testSweep_maxAgeEvictsExpired() {
+        List<String> ids = runScripts(2, "console.log('x')");
+        storage().get(ids.get(0)).setStartTime(System.currentTimeMillis() - 60_000);
+        properties.getRetention().setMaxAgeMs(30_000);
+
+        sweeper.sweep();
+
+        assertStored(ids.get(1));
+        assertEquals(1, evictions(ScriptRetentionSweeper.REASON_AGE));
+    }
+
+    @Test
+    public void testSweep_maxOutputBytesEvictsUntilUnderCap() {
+        //each run prints 60 bytes, held in its buffer and again as the tail kept with its result
+        List<String> ids = runScripts(3, "console.log('x'.repeat(59))");
+        properties.getRetention().setMaxOutputBytes(150);
+
+        sweeper.sweep();
+
+        assertStored(ids.get(2));
+        assertEquals(2, evictions(ScriptRetentionSweeper.REASON_OUTPUT_BYTES));
+        assertEquals(120, scriptExecutionService.getRetainedOutputBytes());
+    }
+
+    @Test
+    public void testSweep_defaultsKeepEveryScript() {
+        List<String> ids = runScripts(3, "console.log('x')");
+
+        sweeper.sweep();
+
+        assertStored(ids.toArray(String[]::new));
+    }
+
+    @Test
+    public void testSweep_neverEvictsProcessingScripts() {
+        ScriptInfo running = new ScriptInfo("running", "while (true) {}");
+        running.transition(QUEUE, PROCESSING);
+        running.setStartTime(0);
+        storage().put(running.getId(), running);
+        runScripts(1, "console.log('x')");
+        properties.getRetention().setMaxEntries(1);
+        properties.getRetention().setMaxAgeMs(1);
+
+        sweeper.sweep();
+
+        //the finished script makes room, the running one stays although it is older than max age
+        assertStored("running");
+        assertFalse(scriptExecutionService.evictScript(running));
+    }
+
+    private List<String> runScripts(int count, String script) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ScriptResult result = scriptExecutionService.executeScript(script, true);
+            //distinct, increasing finish times
+            storage().get(result.getId()).setStartTime(System.currentTimeMillis() - 10_000 + i * 1000L);
+            ids.add(result.getId());
+        }
+        return ids;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ScriptInfo> storage() {
+        return (Map<String, ScriptInfo>) ReflectionTestUtils.getField(scriptRepository, "scripts");
+    }
+
+    private void assertStored(String... ids) {
+        assertEquals(ids.length, storage().size());
+        for (String id : ids) {
+            assertTrue(storage().containsKey(id), id);
+        }
+    }
+
+    private double evictions(String reason) {
+        return meterRegistry.get("script.evictions").tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,96 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.ScriptTemplate;
+import com.offer.java.offer.exception.ApplicationException;
+import com.offer.java.offer.exception.NotFoundException;
+import com.offer.java.offer.exception.ScriptSyntaxException;
+import org.graalvm.polyglot.Engine;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TemplateRegistryTest {
+
+    private static Engine engine;
+    private static ScriptValidator validator;
+
+    private TemplateRegistry registry;
+
+    @BeforeAll
+    static void createEngine() {
+        engine = Engine.newBuilder("js").option("engine.WarnInterpreterOnly", "false").build();
+        ScriptProperties properties = new ScriptProperties();
+        validator = new ScriptValidator(engine, new SourceCache(properties), properties);
+    }
+
+    @AfterAll
+    static void closeEngine() {
+        validator.close();
+        engine.close(true);
+    }
+
+    @BeforeEach
+    void setUp() {
+        ScriptProperties properties = new ScriptProperties();
+        properties.getTemplate().setMaxSize(2);
+        registry = new TemplateRegistry(validator, properties);
+    }
+
+    @Test
+    void testRegister_keepsOneSourcePerTemplate() {
+        ScriptTemplate registered = registry.register("greet", "console.log('hi ' + args.name)");
+
+        assertEquals("greet", registered.getName());
+        assertSame(registry.get("greet").source(), registry.get("greet").source());
+        assertEquals("template-greet", registry.get("greet").source().getName());
+    }
+
+    @Test
+    void testRegister_sameNameReplacesTemplate() {
+        registry.register("greet", "console.log(1)");
+        TemplateRegistry.Template first = registry.get("greet");
+        registry.register("greet", "console.log(2)");
+
+        assertNotSame(first.source(), registry.get("greet").source());
+        assertEquals("console.log(2)", registry.get("greet").script());
+        assertEquals(1, registry.getAll().size());
+    }
+
+    @Test
+    void testRegister_invalidNameOrFullRegistry_rejects() {
+        ApplicationException invalid = assertThrows(ApplicationException.class, () -> registry.register("no spaces", "1"));
+        registry.register("a", "1");
+        registry.register("b", "1");
+        ApplicationException full = assertThrows(ApplicationException.class, () -> registry.register("c", "1"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, invalid.getHttpStatus());
+        assertEquals(HttpStatus.CONFLICT, full.getHttpStatus());
+        assertDoesNotThrow(() -> registry.register("a", "2"));
+    }
+
+    @Test
+    void testRegister_syntaxError_rejectsWithPosition() {
+        ScriptSyntaxException thrown = assertThrows(ScriptSyntaxException.class,
+                () -> registry.register("broken", "console.log('ok');\nlet x = ;"));
+
+        assertEquals(HttpStatus.BAD_REQUEST, thrown.getHttpStatus());
+        assertFalse(thrown.getValidation().isValid());
+        assertEquals(2, thrown.getValidation().getLine());
+        assertNotNull(thrown.getValidation().getColumn());
+        assertThrows(NotFoundException.class, () -> registry.get("broken"));
+    }
+
+    @Test
+    void testRemove_unknownTemplate_throwsNotFound() {
+        registry.register("a", "1");
+        registry.remove("a");
+
+        assertThrows(NotFoundException.class, () -> registry.remove("a"));
+        assertThrows(NotFoundException.class, () -> registry.get("a"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.offer.java.offer.service;
+
+import com.offer.java.offer.config.ScriptProperties;
+import com.offer.java.offer.dto.Priority;
+import com.offer.java.offer.dto.ScriptResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@EnabledForJreRange(min = JRE.JAVA_21)
+public class VirtualThreadScriptSchedulerTest {
+
+    private VirtualThreadScriptScheduler scheduler;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        ScriptProperties properties = new ScriptProperties();
+        properties.getExecutor().setMaxConcurrent(2);
+        properties.getExecutor().setQueueCapacity(10);
+        scheduler = new VirtualThreadScriptScheduler(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void testSubmit_runsOnVirtualThreadsUpToSemaphoreLimit() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        Future<ScriptResult> first = scheduler.submit("1", Priority.NORMAL, () -> {
+            started.countDown();
+            release.await();
+            ScriptResult result = new ScriptResult("1");
+            result.setOutput(Thread.currentThread().getName());
+            return result;
+        });
+        scheduler.submit("2", Priority.NORMAL, () -> {
+            started.countDown();
+            release.await();
+            return new ScriptResult("2");
+        });
+        Future<?> waiting = scheduler.submit("3", Priority.NORMAL, ScriptResult::new);
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, scheduler.getActiveCount());
+        assertEquals(1, scheduler.getQueuePosition(waiting));
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS).getOutput().startsWith("script-virtual-"));
+        waiting.get(5, TimeUnit.SECONDS);
+    }
+}